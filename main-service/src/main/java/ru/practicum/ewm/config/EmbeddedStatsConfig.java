@@ -0,0 +1,59 @@
+package ru.practicum.ewm.config;
+
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.Nullable;
+import ru.practicum.stats.client.EmbeddedStats;
+import ru.practicum.stats.columnar.ColumnarHitStore;
+import ru.practicum.stats.columnar.ColumnarStatsService;
+import ru.practicum.stats.dto.EndpointHitBatchResultDto;
+import ru.practicum.stats.dto.EndpointHitDto;
+import ru.practicum.stats.dto.ViewStats;
+import ru.practicum.stats.service.EndpointHitParser;
+import ru.practicum.stats.service.StatsService;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Runs the stats-columnar storage inside main-service for single-node deployments, see
+ * {@code stats.client.mode}. The Postgres engine needs a datasource of its own and is only available remotely.
+ */
+@Configuration
+@ConditionalOnProperty(name = "stats.client.mode", havingValue = "embedded")
+public class EmbeddedStatsConfig {
+
+    @Bean
+    public ColumnarHitStore embeddedHitStore(
+            @Value("${stats.embedded.directory:data/stats}") Path directory,
+            @Value("${stats.embedded.shard-duration:PT1H}") Duration shardDuration,
+            @Value("${stats.embedded.segment-capacity:1048576}") int segmentCapacity,
+            @Value("${stats.embedded.seal-delay:PT10M}") Duration sealDelay) {
+        return new ColumnarHitStore(directory, shardDuration, segmentCapacity, sealDelay);
+    }
+
+    @Bean
+    public EmbeddedStats embeddedStats(ColumnarHitStore embeddedHitStore, Validator validator,
+                                       @Value("${stats.embedded.max-batch-size:10000}") int maxBatchSize,
+                                       @Value("${stats.embedded.max-hit-count:100000}") int maxHitCount) {
+        StatsService statsService = new ColumnarStatsService(embeddedHitStore,
+                new EndpointHitParser(validator, maxBatchSize, maxHitCount), 10000);
+        return new EmbeddedStats() {
+            @Override
+            public EndpointHitBatchResultDto saveHits(List<EndpointHitDto> hits, @Nullable String batchKey) {
+                return batchKey != null ? statsService.saveHits(hits, batchKey) : statsService.saveHits(hits);
+            }
+
+            @Override
+            public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, @Nullable List<String> uris,
+                                            boolean unique) {
+                return statsService.getStats(start, end, uris, unique);
+            }
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum.ewm.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.practicum.ewm.repository.EventRepository;
+import ru.practicum.ewm.service.search.EventTextIndex;
+import ru.practicum.ewm.service.search.InMemoryEventTextIndex;
+import ru.practicum.ewm.service.search.PostgresEventTextIndex;
+
+/**
+ * Picks the {@link EventTextIndex} by {@code ewm.search.text-index}: {@code none} by default to leave the text filter
+ * to the database, {@code memory} for H2, or {@code postgres} once {@code schema-postgresql.sql} is applied. Sorting
+ * by {@code RELEVANCE} is rejected with {@code none}.
+ */
+@Configuration
+public class EventTextIndexConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "ewm.search.text-index", havingValue = "memory")
+    public EventTextIndex inMemoryEventTextIndex(EventRepository eventRepository) {
+        return new InMemoryEventTextIndex(eventRepository);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "ewm.search.text-index", havingValue = "postgres")
+    public EventTextIndex postgresEventTextIndex(EventRepository eventRepository) {
+        return new PostgresEventTextIndex(eventRepository);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "ewm.search.text-index", havingValue = "none", matchIfMissing = true)
+    public EventTextIndex noEventTextIndex() {
+        return (text, limit) -> null;
+    }
+}
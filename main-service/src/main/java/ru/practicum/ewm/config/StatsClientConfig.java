@@ -1,22 +1,158 @@
 package ru.practicum.ewm.config;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
+import ru.practicum.stats.client.AsyncHitSender;
+import ru.practicum.stats.client.CircuitBreaker;
+import ru.practicum.stats.client.EmbeddedStats;
+import ru.practicum.stats.client.HitAggregator;
+import ru.practicum.stats.client.HitFallback;
 import ru.practicum.stats.client.StatsClient;
+import ru.practicum.stats.client.StatsClientProperties;
+import ru.practicum.stats.client.StatsHttpTransport;
+import ru.practicum.stats.client.ViewCountCache;
+import ru.practicum.stats.client.ViewLookupCoalescer;
+import ru.practicum.stats.client.ViewReplica;
 
 @Configuration
 public class StatsClientConfig {
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    @ConfigurationProperties(prefix = "stats.client")
+    public StatsClientProperties statsClientProperties() {
+        return new StatsClientProperties();
     }
 
     @Bean
-    public StatsClient statsClient(RestTemplate restTemplate, @Value("${stats.server.url}") String statsServerUrl) {
+    public StatsHttpTransport statsHttpTransport(StatsClientProperties statsClientProperties,
+                                                 MeterRegistry meterRegistry) {
+        StatsHttpTransport transport = new StatsHttpTransport(statsClientProperties.getHttp());
+        Gauge.builder("stats.client.http.in-flight", transport, StatsHttpTransport::getInFlight)
+                .description("Requests to the stats service currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.http.max", transport, StatsHttpTransport::getMaxConcurrentRequests)
+                .description("Maximum number of concurrent requests to the stats service")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.http.utilization", transport, StatsHttpTransport::getUtilization)
+                .description("Share of the stats client request slots in use")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.http.queued", transport, StatsHttpTransport::getQueued)
+                .description("Callers waiting for a stats client request slot")
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.client.http.rejected", transport, StatsHttpTransport::getRejected)
+                .description("Requests rejected because no request slot became free in time")
+                .register(meterRegistry);
+        return transport;
+    }
+
+    @Bean
+    public RestTemplate restTemplate(StatsHttpTransport statsHttpTransport) {
+        return statsHttpTransport.getRestTemplate();
+    }
+
+    @Bean
+    public StatsClient statsClient(RestTemplate restTemplate, @Value("${stats.server.url}") String statsServerUrl,
+                                   StatsClientProperties statsClientProperties,
+                                   ObjectProvider<EmbeddedStats> embeddedStats, MeterRegistry meterRegistry) {
 
-        return new StatsClient(restTemplate, statsServerUrl);
+        StatsClient client = statsClientProperties.getMode() == StatsClient.Mode.EMBEDDED
+                ? new StatsClient(embeddedStats.getObject(), statsClientProperties)
+                : new StatsClient(restTemplate, statsServerUrl, statsClientProperties);
+        AsyncHitSender sender = client.getAsyncSender();
+        if (sender != null) {
+            Gauge.builder("stats.client.hits.queued", sender, AsyncHitSender::getQueueSize)
+                    .description("Hits waiting to be sent to the stats service")
+                    .register(meterRegistry);
+            FunctionCounter.builder("stats.client.hits.sent", sender, AsyncHitSender::getSent)
+                    .register(meterRegistry);
+            FunctionCounter.builder("stats.client.hits.dropped", sender, AsyncHitSender::getDropped)
+                    .register(meterRegistry);
+            FunctionCounter.builder("stats.client.hits.spilled", sender, AsyncHitSender::getSpilled)
+                    .register(meterRegistry);
+            FunctionCounter.builder("stats.client.hits.failed", sender, AsyncHitSender::getFailed)
+                    .register(meterRegistry);
+        }
+        HitAggregator aggregator = client.getAggregator();
+        if (aggregator != null) {
+            FunctionCounter.builder("stats.client.hits.aggregated.in", aggregator, HitAggregator::getReceived)
+                    .description("Hits recorded before aggregation")
+                    .register(meterRegistry);
+            FunctionCounter.builder("stats.client.hits.aggregated.out", aggregator, HitAggregator::getEmitted)
+                    .description("Weighted hits passed on after aggregation")
+                    .register(meterRegistry);
+        }
+        ViewCountCache viewCache = client.getViewCache();
+        if (viewCache != null) {
+            Gauge.builder("stats.client.views.cache.size", viewCache, ViewCountCache::size)
+                    .register(meterRegistry);
+            FunctionCounter.builder("stats.client.views.cache.fresh", viewCache, ViewCountCache::getFresh)
+                    .description("View lookups served from a fresh cache entry")
+                    .register(meterRegistry);
+            FunctionCounter.builder("stats.client.views.cache.stale", viewCache, ViewCountCache::getStale)
+                    .description("View lookups served from a stale entry while it was refreshed")
+                    .register(meterRegistry);
+            FunctionCounter.builder("stats.client.views.cache.misses", viewCache, ViewCountCache::getMisses)
+                    .description("View lookups that waited for the stats service")
+                    .register(meterRegistry);
+            FunctionCounter.builder("stats.client.views.cache.refresh-failures", viewCache,
+                            ViewCountCache::getRefreshFailures)
+                    .register(meterRegistry);
+        }
+        ViewLookupCoalescer coalescer = client.getCoalescer();
+        if (coalescer != null) {
+            FunctionCounter.builder("stats.client.views.lookups", coalescer, ViewLookupCoalescer::getRequested)
+                    .description("Event view lookups passed to the coalescer")
+                    .register(meterRegistry);
+            FunctionCounter.builder("stats.client.views.coalesced", coalescer, ViewLookupCoalescer::getCoalesced)
+                    .description("Event view lookups that joined an in-flight request")
+                    .register(meterRegistry);
+            FunctionCounter.builder("stats.client.views.batches", coalescer, ViewLookupCoalescer::getBatches)
+                    .description("Requests sent to the stats service for event views")
+                    .register(meterRegistry);
+        }
+        ViewReplica replica = client.getReplica();
+        if (replica != null) {
+            Gauge.builder("stats.client.views.replica.synced", replica, r -> r.isSynced() ? 1 : 0)
+                    .description("Whether event views are served from the pushed replica")
+                    .register(meterRegistry);
+            Gauge.builder("stats.client.views.replica.size", replica, ViewReplica::size)
+                    .register(meterRegistry);
+            FunctionCounter.builder("stats.client.views.replica.connects", replica, ViewReplica::getConnects)
+                    .description("Subscriptions opened to the stats service")
+                    .register(meterRegistry);
+            FunctionCounter.builder("stats.client.views.replica.updates", replica, ViewReplica::getUpdates)
+                    .description("View count updates pushed by the stats service")
+                    .register(meterRegistry);
+        }
+        CircuitBreaker breaker = client.getBreaker();
+        if (breaker != null) {
+            Gauge.builder("stats.client.breaker.state", breaker, b -> b.getState().ordinal())
+                    .description("Stats circuit breaker state: 0 closed, 1 half-open, 2 open")
+                    .register(meterRegistry);
+            FunctionCounter.builder("stats.client.breaker.short-circuited", breaker,
+                            CircuitBreaker::getShortCircuited)
+                    .description("Calls to the stats service rejected by the open circuit breaker")
+                    .register(meterRegistry);
+            for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+                FunctionCounter.builder("stats.client.breaker.transitions", breaker, b -> b.getTransitions(state))
+                        .description("Stats circuit breaker state changes")
+                        .tag("state", state.name())
+                        .register(meterRegistry);
+            }
+        }
+        HitFallback hitFallback = client.getHitFallback();
+        if (hitFallback != null) {
+            Gauge.builder("stats.client.hits.fallback", hitFallback, HitFallback::size)
+                    .description("Hits kept aside until the stats service is reachable again")
+                    .register(meterRegistry);
+        }
+        return client;
     }
-}
\ No newline at end of file
+}
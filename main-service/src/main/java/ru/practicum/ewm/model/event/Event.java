@@ -47,6 +47,16 @@ public class Event {
     @Column(name = "participant_limit", nullable = false)
     private Integer participantLimit;
 
+    // Written only by the atomic updates in EventRepository, so saving a stale entity never resets it
+    @Column(name = "confirmed_requests", nullable = false, insertable = false, updatable = false)
+    @Builder.Default
+    private Long confirmedRequests = 0L;
+
+    // Copy of the stats service count for sorting, kept by EventViewsSyncJob
+    @Column(nullable = false, insertable = false, updatable = false)
+    @Builder.Default
+    private Long views = 0L;
+
     @Column(name = "request_moderation", nullable = false)
     private Boolean requestModeration;
 
@@ -3,5 +3,6 @@ package ru.practicum.ewm.model.event;
 public enum EventSortType {
     EVENT_DATE,
     VIEWS,
-    RATING
+    RATING,
+    RELEVANCE
 }
\ No newline at end of file
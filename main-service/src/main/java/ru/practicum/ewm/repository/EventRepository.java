@@ -1,7 +1,11 @@
 package ru.practicum.ewm.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -22,20 +26,39 @@ public interface EventRepository extends JpaRepository<Event, Long> {
 
     Optional<Event> findByIdAndInitiatorId(Long eventId, Long initiatorId);
 
-    @Query("SELECT e FROM Event e " +
-            "WHERE e.state = 'PUBLISHED' " +
+    String PUBLISHED_EVENTS_FILTER = "WHERE e.state = 'PUBLISHED' " +
             "AND (:text IS NULL OR LOWER(e.annotation) LIKE LOWER(CONCAT('%', :text, '%')) OR LOWER(e.description) LIKE LOWER(CONCAT('%', :text, '%'))) " +
             "AND (:categories IS NULL OR e.category.id IN :categories) " +
             "AND (:paid IS NULL OR e.paid = :paid) " +
             "AND (e.eventDate >= :rangeStart) " +
-            "AND (:rangeEnd IS NULL OR e.eventDate <= :rangeEnd)")
+            "AND (e.eventDate <= COALESCE(:rangeEnd, e.eventDate)) " +
+            "AND (:onlyAvailable = false OR e.participantLimit = 0 OR e.confirmedRequests < e.participantLimit) " +
+            "AND (:eventIds IS NULL OR e.id IN :eventIds)";
+
+    /**
+     * Published events matching the public search filters; {@code eventIds}, when given, are the candidates
+     * found by an {@link ru.practicum.ewm.service.search.EventTextIndex} for {@code text}.
+     */
+    @EntityGraph(attributePaths = {"category", "initiator"})
+    @Query("SELECT e FROM Event e " + PUBLISHED_EVENTS_FILTER)
     List<Event> findPublishedEvents(@Param("text") String text,
                                     @Param("categories") List<Long> categories,
                                     @Param("paid") Boolean paid,
                                     @Param("rangeStart") LocalDateTime rangeStart,
                                     @Param("rangeEnd") LocalDateTime rangeEnd,
+                                    @Param("onlyAvailable") boolean onlyAvailable,
+                                    @Param("eventIds") List<Long> eventIds,
                                     Pageable pageable);
 
+    @Query("SELECT e.id FROM Event e " + PUBLISHED_EVENTS_FILTER)
+    List<Long> findPublishedEventIds(@Param("text") String text,
+                                     @Param("categories") List<Long> categories,
+                                     @Param("paid") Boolean paid,
+                                     @Param("rangeStart") LocalDateTime rangeStart,
+                                     @Param("rangeEnd") LocalDateTime rangeEnd,
+                                     @Param("onlyAvailable") boolean onlyAvailable,
+                                     @Param("eventIds") List<Long> eventIds);
+
     @Query("SELECT e FROM Event e " +
             "WHERE (:users IS NULL OR e.initiator.id IN :users) " +
             "AND (:states IS NULL OR e.state IN :states) " +
@@ -48,4 +71,70 @@ public interface EventRepository extends JpaRepository<Event, Long> {
                                 @Param("rangeStart") LocalDateTime rangeStart,
                                 @Param("rangeEnd") LocalDateTime rangeEnd,
                                 Pageable pageable);
+
+    /**
+     * Adds {@code count} confirmed requests unless that would exceed the participant limit; returns 0 if it would.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Event e SET e.confirmedRequests = e.confirmedRequests + :count " +
+            "WHERE e.id = :eventId " +
+            "AND (e.participantLimit = 0 OR e.confirmedRequests + :count <= e.participantLimit)")
+    int addConfirmedRequests(@Param("eventId") Long eventId, @Param("count") long count);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Event e SET e.confirmedRequests = e.confirmedRequests - :count " +
+            "WHERE e.id = :eventId AND e.confirmedRequests >= :count")
+    int removeConfirmedRequests(@Param("eventId") Long eventId, @Param("count") long count);
+
+    @Query(value = "SELECT e.id FROM events e " +
+            "WHERE e.confirmed_requests <> (SELECT COUNT(*) FROM participation_requests r " +
+            "WHERE r.event_id = e.id AND r.status = 'CONFIRMED')", nativeQuery = true)
+    List<Long> findIdsWithStaleConfirmedRequests();
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM Event e WHERE e.id = :eventId")
+    Optional<Event> findByIdForUpdate(@Param("eventId") Long eventId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Event e SET e.confirmedRequests = :count WHERE e.id = :eventId")
+    int setConfirmedRequests(@Param("eventId") Long eventId, @Param("count") long count);
+
+    @Query("SELECT e.id FROM Event e WHERE e.state = 'PUBLISHED' AND e.id > :afterId ORDER BY e.id")
+    List<Long> findPublishedIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Event e SET e.views = :views WHERE e.id = :eventId AND e.views <> :views")
+    int setViews(@Param("eventId") Long eventId, @Param("views") long views);
+
+    @Query("SELECT e.id AS id, e.annotation AS annotation, e.description AS description FROM Event e " +
+            "WHERE e.state = 'PUBLISHED' AND e.id > :afterId ORDER BY e.id")
+    List<EventTextProjection> findPublishedTextsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Up to {@code limit} published events matching {@code pattern} the way the text filter does, in no particular
+     * order; the trigram indexes from {@code schema-postgresql.sql} serve both {@code LIKE}s.
+     */
+    @Query(value = "SELECT e.id FROM events e " +
+            "WHERE e.state = 'PUBLISHED' " +
+            "AND (LOWER(e.annotation) LIKE LOWER(:pattern) OR LOWER(e.description) LIKE LOWER(:pattern)) " +
+            "LIMIT :limit", nativeQuery = true)
+    List<Long> findPublishedIdsMatching(@Param("pattern") String pattern, @Param("limit") int limit);
+
+    /**
+     * Orders {@code eventIds} by the {@code pg_trgm} word similarity of {@code text} to the annotation, which counts
+     * twice, and to the description, most similar first.
+     */
+    @Query(value = "SELECT e.id FROM events e " +
+            "WHERE e.id IN (:eventIds) " +
+            "ORDER BY 2 * word_similarity(LOWER(:text), LOWER(e.annotation)) " +
+            "+ word_similarity(LOWER(:text), LOWER(e.description)) DESC, e.id DESC", nativeQuery = true)
+    List<Long> rankBySimilarity(@Param("text") String text, @Param("eventIds") List<Long> eventIds);
+
+    interface EventTextProjection {
+        Long getId();
+
+        String getAnnotation();
+
+        String getDescription();
+    }
 }
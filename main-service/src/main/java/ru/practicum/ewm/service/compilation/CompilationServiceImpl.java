@@ -13,10 +13,8 @@ import ru.practicum.ewm.exception.NotFoundException;
 import ru.practicum.ewm.mapper.CompilationMapper;
 import ru.practicum.ewm.model.compilation.Compilation;
 import ru.practicum.ewm.model.event.Event;
-import ru.practicum.ewm.model.participationRequest.ParticipationRequestStatus;
 import ru.practicum.ewm.repository.CompilationRepository;
 import ru.practicum.ewm.repository.EventRepository;
-import ru.practicum.ewm.repository.RequestRepository;
 import ru.practicum.stats.client.StatsClient;
 
 import java.time.LocalDateTime;
@@ -31,7 +29,6 @@ public class CompilationServiceImpl implements CompilationService {
     private final CompilationRepository compilationRepository;
     private final EventRepository eventRepository;
     private final CompilationMapper compilationMapper;
-    private final RequestRepository requestRepository;
     private final StatsClient statsClient;
 
     @Override
@@ -140,16 +137,8 @@ public class CompilationServiceImpl implements CompilationService {
             return Collections.emptyMap();
         }
 
-        List<Long> eventIds = events.stream()
-                .map(Event::getId)
-                .collect(Collectors.toList());
-
-        return requestRepository.countByEventIdInAndStatus(eventIds, ParticipationRequestStatus.CONFIRMED)
-                .stream()
-                .collect(Collectors.toMap(
-                        RequestRepository.RequestCountProjection::getEventId,
-                        RequestRepository.RequestCountProjection::getCount
-                ));
+        return events.stream()
+                .collect(Collectors.toMap(Event::getId, Event::getConfirmedRequests));
     }
 
     private Map<Long, Long> getViewsCounts(Collection<Event> events) {
@@ -163,7 +152,7 @@ public class CompilationServiceImpl implements CompilationService {
 
         return statsClient.getViewsForEvents("ewm-main-service",
                 eventIds,
-                LocalDateTime.now().minusYears(1),
+                LocalDateTime.of(2020, 1, 1, 0, 0, 0),
                 LocalDateTime.now(),
                 true);
     }
@@ -0,0 +1,70 @@
+package ru.practicum.ewm.service.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.model.event.Event;
+import ru.practicum.ewm.model.participationRequest.ParticipationRequestStatus;
+import ru.practicum.ewm.repository.EventRepository;
+import ru.practicum.ewm.repository.RequestRepository;
+
+import java.util.List;
+
+/**
+ * Recomputes {@code events.confirmed_requests} from {@code participation_requests} for events where the two
+ * disagree, e.g. after manual changes to the database.
+ */
+@Slf4j
+@Component
+public class ConfirmedRequestsRepairJob {
+    private final EventRepository eventRepository;
+    private final RequestRepository requestRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public ConfirmedRequestsRepairJob(EventRepository eventRepository,
+                                      RequestRepository requestRepository,
+                                      PlatformTransactionManager transactionManager) {
+        this.eventRepository = eventRepository;
+        this.requestRepository = requestRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(initialDelayString = "${ewm.confirmed-requests.repair-initial-delay-ms:60000}",
+            fixedDelayString = "${ewm.confirmed-requests.repair-interval-ms:600000}")
+    public void repair() {
+        List<Long> eventIds = eventRepository.findIdsWithStaleConfirmedRequests();
+        if (eventIds.isEmpty()) {
+            return;
+        }
+        int repaired = 0;
+        for (Long eventId : eventIds) {
+            try {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> repair(eventId)))) {
+                    repaired++;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to repair confirmed requests of event {}: {}", eventId, e.getMessage());
+            }
+        }
+        log.warn("Confirmed requests counter was off for {} events, repaired {}", eventIds.size(), repaired);
+    }
+
+    private boolean repair(Long eventId) {
+        // Every status change to or from CONFIRMED updates the event row, so counting under its lock sees them all
+        Long counter = eventRepository.findByIdForUpdate(eventId)
+                .map(Event::getConfirmedRequests)
+                .orElse(null);
+        if (counter == null) {
+            return false;
+        }
+        long confirmed = requestRepository.countByEventIdAndStatus(eventId, ParticipationRequestStatus.CONFIRMED);
+        if (counter == confirmed) {
+            return false;
+        }
+        eventRepository.setConfirmedRequests(eventId, confirmed);
+        log.info("Confirmed requests of event {} repaired: {} -> {}", eventId, counter, confirmed);
+        return true;
+    }
+}
@@ -3,6 +3,7 @@ package ru.practicum.ewm.service.event;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -26,14 +27,18 @@ import ru.practicum.ewm.repository.CategoryRepository;
 import ru.practicum.ewm.repository.EventRepository;
 import ru.practicum.ewm.repository.RequestRepository;
 import ru.practicum.ewm.repository.UserRepository;
+import ru.practicum.ewm.service.search.EventTextIndex;
 import ru.practicum.ewm.service.validation.ValidationService;
 import ru.practicum.stats.client.StatsClient;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -51,6 +56,10 @@ public class EventServiceImpl implements EventService {
     private final RequestMapper requestMapper;
     private final StatsClient statsClient;
     private final ValidationService validationService;
+    private final EventTextIndex eventTextIndex;
+
+    @Value("${ewm.search.max-candidates:1000}")
+    private int maxTextCandidates;
 
     private static final String APP_NAME = "ewm-main-service";
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
@@ -63,14 +72,12 @@ public class EventServiceImpl implements EventService {
         Event event = eventRepository.findByIdAndState(id, EventState.PUBLISHED)
                 .orElseThrow(() -> new NotFoundException("Event with id=" + id + " was not found"));
 
-        long confirmedRequests = requestRepository.countByEventIdAndStatus(id, ParticipationRequestStatus.CONFIRMED);
-
         statsClient.recordHit(APP_NAME, request.getRequestURI(), request.getRemoteAddr(), LocalDateTime.now());
 
         long views = statsClient.getViews(APP_NAME, id, LocalDateTime.of(2020, 1, 1, 0, 0, 0), LocalDateTime.now(), true);
 
         log.info("Found public event: {}", event.getTitle());
-        return eventMapper.toFullDto(event, confirmedRequests, views);
+        return eventMapper.toFullDto(event, event.getConfirmedRequests(), views);
     }
 
     @Override
@@ -96,20 +103,26 @@ public class EventServiceImpl implements EventService {
         if ("EVENT_DATE".equals(sort)) {
             sortObj = Sort.by(Sort.Direction.ASC, "eventDate");
         } else if ("VIEWS".equals(sort)) {
-            sortObj = Sort.by(Sort.Direction.DESC, "id");
+            // By the synced copy of the views, the counts in the response itself may be slightly newer
+            sortObj = Sort.by(Sort.Direction.DESC, "views", "id");
         }
 
         Pageable pageable = PageRequest.of(from / size, size, sortObj);
-
-        List<Event> events = eventRepository.findPublishedEvents(text, categories, paid, rangeStart, rangeEnd, pageable);
-
-        if (onlyAvailable != null && onlyAvailable) {
-            events = events.stream()
-                    .filter(event -> {
-                        long confirmedRequests = requestRepository.countByEventIdAndStatus(event.getId(), ParticipationRequestStatus.CONFIRMED);
-                        return event.getParticipantLimit() == 0 || confirmedRequests < event.getParticipantLimit();
-                    })
-                    .collect(Collectors.toList());
+        boolean available = Boolean.TRUE.equals(onlyAvailable);
+
+        boolean byRelevance = "RELEVANCE".equals(sort);
+        List<Long> textMatches = text != null && !text.isBlank() && (byRelevance || !eventTextIndex.isExact())
+                ? eventTextIndex.search(text, maxTextCandidates)
+                : null;
+        List<Event> events;
+        if (textMatches != null && textMatches.isEmpty()) {
+            events = List.of();
+        } else if (textMatches != null && byRelevance) {
+            events = findByRelevance(text, categories, paid, rangeStart, rangeEnd, available, textMatches, pageable);
+        } else {
+            // Also RELEVANCE when the text is too short or too common for the index, ordered by date then
+            events = eventRepository.findPublishedEvents(text, categories, paid, rangeStart, rangeEnd, available,
+                    textMatches, pageable);
         }
 
         List<Long> eventIds = events.stream().map(Event::getId).collect(Collectors.toList());
@@ -119,20 +132,38 @@ public class EventServiceImpl implements EventService {
         Map<Long, Long> viewsMap = statsClient.getViewsForEvents(APP_NAME, eventIds,
                 LocalDateTime.of(2020, 1, 1, 0, 0, 0), LocalDateTime.now(), true);
 
-        Map<Long, Long> confirmedRequestsMap = eventIds.stream()
-                .collect(Collectors.toMap(
-                        id -> id,
-                        id -> requestRepository.countByEventIdAndStatus(id, ParticipationRequestStatus.CONFIRMED)
-                ));
-
         log.info("Found {} public events", events.size());
         return events.stream()
                 .map(event -> eventMapper.toShortDto(event,
-                        confirmedRequestsMap.get(event.getId()),
+                        event.getConfirmedRequests(),
                         viewsMap.getOrDefault(event.getId(), 0L)))
                 .collect(Collectors.toList());
     }
 
+    private List<Event> findByRelevance(String text, List<Long> categories, Boolean paid, LocalDateTime rangeStart,
+                                        LocalDateTime rangeEnd, boolean onlyAvailable, List<Long> textMatches,
+                                        Pageable pageable) {
+        // The candidates are already in relevance order, the database only filters them
+        Set<Long> matching = new HashSet<>(eventRepository.findPublishedEventIds(text, categories, paid, rangeStart,
+                rangeEnd, onlyAvailable, textMatches));
+        List<Long> pageIds = textMatches.stream()
+                .filter(matching::contains)
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .toList();
+        if (pageIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Event> byId = eventRepository.findPublishedEvents(text, null, null, rangeStart, null, false,
+                        pageIds, Pageable.unpaged())
+                .stream()
+                .collect(Collectors.toMap(Event::getId, event -> event));
+        return pageIds.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<EventShortDto> getUserEvents(Long userId, Integer from, Integer size) {
@@ -141,16 +172,10 @@ public class EventServiceImpl implements EventService {
         Pageable pageable = PageRequest.of(from / size, size);
         List<Event> events = eventRepository.findByInitiatorId(userId, pageable);
 
-        Map<Long, Long> confirmedRequestsMap = events.stream()
-                .collect(Collectors.toMap(
-                        Event::getId,
-                        event -> requestRepository.countByEventIdAndStatus(event.getId(), ParticipationRequestStatus.CONFIRMED)
-                ));
-
         log.info("Found {} events for user {}", events.size(), userId);
         return events.stream()
                 .map(event -> eventMapper.toShortDto(event,
-                        confirmedRequestsMap.get(event.getId()),
+                        event.getConfirmedRequests(),
                         0L))
                 .collect(Collectors.toList());
     }
@@ -197,12 +222,10 @@ public class EventServiceImpl implements EventService {
         Event event = eventRepository.findByIdAndInitiatorId(eventId, userId)
                 .orElseThrow(() -> new NotFoundException("Event with id=" + eventId + " was not found"));
 
-        long confirmedRequests = requestRepository.countByEventIdAndStatus(eventId, ParticipationRequestStatus.CONFIRMED);
-
         long views = statsClient.getViews(APP_NAME, eventId, LocalDateTime.of(2020, 1, 1, 0, 0, 0), LocalDateTime.now(), true);
 
         log.info("Found event: {}", event.getTitle());
-        return eventMapper.toFullDto(event, confirmedRequests, views);
+        return eventMapper.toFullDto(event, event.getConfirmedRequests(), views);
     }
 
     @Override
@@ -262,12 +285,11 @@ public class EventServiceImpl implements EventService {
         }
 
         Event savedEvent = eventRepository.save(event);
-        long confirmedRequests = requestRepository.countByEventIdAndStatus(eventId, ParticipationRequestStatus.CONFIRMED);
-
+        eventTextIndex.onEventChanged(savedEvent);
         long views = statsClient.getViews(APP_NAME, eventId, LocalDateTime.of(2020, 1, 1, 0, 0, 0), LocalDateTime.now(), true);
 
         log.info("Updated event: {}", savedEvent.getTitle());
-        return eventMapper.toFullDto(savedEvent, confirmedRequests, views);
+        return eventMapper.toFullDto(savedEvent, savedEvent.getConfirmedRequests(), views);
     }
 
     @Override
@@ -313,11 +335,10 @@ public class EventServiceImpl implements EventService {
 
         ParticipationRequestStatus newStatus = ParticipationRequestStatus.valueOf(updateRequest.getStatus());
 
-        if (newStatus == ParticipationRequestStatus.CONFIRMED) {
-            long confirmedRequests = requestRepository.countByEventIdAndStatus(eventId, ParticipationRequestStatus.CONFIRMED);
-            if (event.getParticipantLimit() > 0 && confirmedRequests + requests.size() > event.getParticipantLimit()) {
-                throw new ConflictException("Cannot confirm requests: participant limit exceeded");
-            }
+        // Only PENDING requests get here, so just confirming changes the counter; the update enforces the limit
+        if (newStatus == ParticipationRequestStatus.CONFIRMED && !requests.isEmpty()
+                && eventRepository.addConfirmedRequests(eventId, requests.size()) == 0) {
+            throw new ConflictException("Cannot confirm requests: participant limit exceeded");
         }
 
         List<ParticipationRequestDto> confirmedRequests = new ArrayList<>();
@@ -362,16 +383,10 @@ public class EventServiceImpl implements EventService {
         Pageable pageable = PageRequest.of(from / size, size);
         List<Event> events = eventRepository.findAdminEvents(users, eventStates, categories, rangeStart, rangeEnd, pageable);
 
-        Map<Long, Long> confirmedRequestsMap = events.stream()
-                .collect(Collectors.toMap(
-                        Event::getId,
-                        event -> requestRepository.countByEventIdAndStatus(event.getId(), ParticipationRequestStatus.CONFIRMED)
-                ));
-
         log.info("Found {} admin events", events.size());
         return events.stream()
                 .map(event -> eventMapper.toFullDto(event,
-                        confirmedRequestsMap.get(event.getId()),
+                        event.getConfirmedRequests(),
                         0L))
                 .collect(Collectors.toList());
     }
@@ -434,9 +449,9 @@ public class EventServiceImpl implements EventService {
         }
 
         Event savedEvent = eventRepository.save(event);
-        long confirmedRequests = requestRepository.countByEventIdAndStatus(eventId, ParticipationRequestStatus.CONFIRMED);
+        eventTextIndex.onEventChanged(savedEvent);
 
         log.info("Updated admin event: {}", savedEvent.getTitle());
-        return eventMapper.toFullDto(savedEvent, confirmedRequests, 0L);
+        return eventMapper.toFullDto(savedEvent, savedEvent.getConfirmedRequests(), 0L);
     }
 }
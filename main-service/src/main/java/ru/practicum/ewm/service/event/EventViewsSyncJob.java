@@ -0,0 +1,76 @@
+package ru.practicum.ewm.service.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.repository.EventRepository;
+import ru.practicum.stats.client.StatsClient;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies view counts of published events from the stats service into {@code events.views}, so public search can
+ * sort by views in the database. {@code ewm.views.sync-interval-ms} bounds how stale that order can be.
+ * Counts are read from the stats service itself, the client's cache and replica may be ahead of it.
+ */
+@Slf4j
+@Component
+public class EventViewsSyncJob {
+    private static final LocalDateTime VIEWS_START = LocalDateTime.of(2020, 1, 1, 0, 0, 0);
+
+    private final EventRepository eventRepository;
+    private final StatsClient statsClient;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${ewm.views.sync-batch-size:500}")
+    private int batchSize;
+
+    public EventViewsSyncJob(EventRepository eventRepository,
+                             StatsClient statsClient,
+                             PlatformTransactionManager transactionManager) {
+        this.eventRepository = eventRepository;
+        this.statsClient = statsClient;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${ewm.views.sync-interval-ms:60000}")
+    public void sync() {
+        long afterId = 0;
+        int checked = 0;
+        int changed = 0;
+        while (true) {
+            List<Long> eventIds = eventRepository.findPublishedIdsAfter(afterId, PageRequest.of(0, batchSize));
+            if (eventIds.isEmpty()) {
+                break;
+            }
+            Map<Long, Long> views;
+            try {
+                views = statsClient.fetchViewsForEvents(eventIds, VIEWS_START, LocalDateTime.now(), true);
+            } catch (RuntimeException e) {
+                log.warn("Views sync stopped after {} events, stats service unavailable: {}", checked, e.getMessage());
+                break;
+            }
+            Integer updated = transactionTemplate.execute(status -> store(eventIds, views));
+            changed += updated != null ? updated : 0;
+            checked += eventIds.size();
+            afterId = eventIds.get(eventIds.size() - 1);
+        }
+        if (changed > 0) {
+            log.info("Synced views of {} published events, {} changed", checked, changed);
+        }
+    }
+
+    private int store(List<Long> eventIds, Map<Long, Long> views) {
+        int updated = 0;
+        for (Long eventId : eventIds) {
+            updated += eventRepository.setViews(eventId, views.getOrDefault(eventId, 0L));
+        }
+        return updated;
+    }
+}
@@ -41,6 +41,9 @@ public class RequestServiceImpl implements RequestService {
         validateRequestCreation(userId, eventId, event);
 
         ParticipationRequest request = buildParticipationRequest(requester, event);
+        if (request.getStatus() == ParticipationRequestStatus.CONFIRMED) {
+            addConfirmedRequest(event);
+        }
         ParticipationRequest savedRequest = requestRepository.save(request);
 
         log.info("Participation request created with id: {}", savedRequest.getId());
@@ -66,6 +69,9 @@ public class RequestServiceImpl implements RequestService {
         log.info("Canceling request {} by user {}", requestId, userId);
         ParticipationRequest request = getRequestOrThrow(requestId, userId);
 
+        if (request.getStatus() == ParticipationRequestStatus.CONFIRMED) {
+            removeConfirmedRequest(request.getEvent());
+        }
         request.setStatus(ParticipationRequestStatus.CANCELED);
         ParticipationRequest updatedRequest = requestRepository.save(request);
 
@@ -106,8 +112,13 @@ public class RequestServiceImpl implements RequestService {
 
         validateRequestBelongsToEvent(request, eventId);
 
-        if (status == ParticipationRequestStatus.CONFIRMED) {
+        if (status == ParticipationRequestStatus.CONFIRMED
+                && request.getStatus() != ParticipationRequestStatus.CONFIRMED) {
             validateParticipantLimit(event);
+            addConfirmedRequest(event);
+        } else if (status != ParticipationRequestStatus.CONFIRMED
+                && request.getStatus() == ParticipationRequestStatus.CONFIRMED) {
+            removeConfirmedRequest(event);
         }
 
         request.setStatus(status);
@@ -165,13 +176,27 @@ public class RequestServiceImpl implements RequestService {
     }
 
     private void validateParticipantLimit(Event event) {
-        if (event.getParticipantLimit() > 0 &&
-                requestRepository.countByEventIdAndStatus(
-                        event.getId(),
-                        ParticipationRequestStatus.CONFIRMED) >= event.getParticipantLimit()) {
+        if (event.getParticipantLimit() > 0 && event.getConfirmedRequests() >= event.getParticipantLimit()) {
+            log.warn("Participant limit reached for event {}", event.getId());
+            throw new ConflictException("Participant limit reached");
+        }
+    }
+
+    private void addConfirmedRequest(Event event) {
+        // The check above reads a possibly stale counter, the limit is only enforced by the update itself
+        if (eventRepository.addConfirmedRequests(event.getId(), 1) == 0) {
             log.warn("Participant limit reached for event {}", event.getId());
             throw new ConflictException("Participant limit reached");
         }
+        event.setConfirmedRequests(event.getConfirmedRequests() + 1);
+    }
+
+    private void removeConfirmedRequest(Event event) {
+        if (eventRepository.removeConfirmedRequests(event.getId(), 1) == 0) {
+            log.warn("Confirmed requests counter of event {} is already 0", event.getId());
+            return;
+        }
+        event.setConfirmedRequests(event.getConfirmedRequests() - 1);
     }
 
     private void validateRequestCreation(Long userId, Long eventId, Event event) {
@@ -187,13 +212,7 @@ public class RequestServiceImpl implements RequestService {
             log.warn("Event {} is not published", eventId);
             throw new ConflictException("Event is not published");
         }
-        if (event.getParticipantLimit() > 0 &&
-                requestRepository.countByEventIdAndStatus(
-                        eventId,
-                        ParticipationRequestStatus.CONFIRMED) >= event.getParticipantLimit()) {
-            log.warn("Participant limit reached for event {}", eventId);
-            throw new ConflictException("Participant limit reached");
-        }
+        validateParticipantLimit(event);
     }
 
     private ParticipationRequest buildParticipationRequest(User requester, Event event) {
@@ -0,0 +1,35 @@
+package ru.practicum.ewm.service.search;
+
+import org.springframework.lang.Nullable;
+import ru.practicum.ewm.model.event.Event;
+
+import java.util.List;
+
+/**
+ * Narrows the public text search down to candidate events before the annotation and description are matched.
+ * Selected with {@code ewm.search.text-index}.
+ */
+public interface EventTextIndex {
+
+    /**
+     * Ids of published events that may contain {@code text}, most relevant first. Every event that does contain it
+     * is among them. Returns {@code null} when the index can't narrow the search down to at most {@code limit}
+     * events, so that all published events have to be matched.
+     */
+    @Nullable
+    List<Long> search(String text, int limit);
+
+    /**
+     * Whether {@link #search} finds exactly the events the text filter matches rather than a superset of them. Such
+     * an index is only asked for relevance order, since the database filters with the same indexes without it.
+     */
+    default boolean isExact() {
+        return false;
+    }
+
+    /**
+     * Called after an event was saved with possibly new text or state.
+     */
+    default void onEventChanged(Event event) {
+    }
+}
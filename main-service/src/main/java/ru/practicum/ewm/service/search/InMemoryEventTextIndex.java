@@ -0,0 +1,188 @@
+package ru.practicum.ewm.service.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ewm.model.event.Event;
+import ru.practicum.ewm.model.event.EventState;
+import ru.practicum.ewm.repository.EventRepository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Trigram index over the texts of published events, for databases without trigram search such as H2.
+ * An event is a candidate for a search word when it has every trigram of the word, so a word is found from its
+ * middle as well and no event the text filter would match is missed. Trigrams are kept as three packed chars
+ * rather than strings, and a search intersects the shortest posting lists first. Relevance counts trigram
+ * occurrences, those in the annotation twice.
+ */
+@Slf4j
+public class InMemoryEventTextIndex implements EventTextIndex {
+    private static final int LOAD_BATCH_SIZE = 1000;
+    private static final int ANNOTATION_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final EventRepository eventRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Map<Long, Integer>> postings = new HashMap<>();
+    private final Map<Long, long[]> trigrams = new HashMap<>();
+    private volatile boolean loaded;
+
+    public InMemoryEventTextIndex(EventRepository eventRepository) {
+        this.eventRepository = eventRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        // Changes committed meanwhile wait for the lock and are applied on top of what was loaded
+        lock.writeLock().lock();
+        try {
+            long afterId = 0;
+            while (true) {
+                List<EventRepository.EventTextProjection> texts =
+                        eventRepository.findPublishedTextsAfter(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+                if (texts.isEmpty()) {
+                    break;
+                }
+                for (EventRepository.EventTextProjection text : texts) {
+                    put(text.getId(), text.getAnnotation(), text.getDescription());
+                }
+                afterId = texts.get(texts.size() - 1).getId();
+            }
+            loaded = true;
+            log.info("Event text index loaded: {} events, {} trigrams", trigrams.size(), postings.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Nullable
+    @Override
+    public List<Long> search(String text, int limit) {
+        Set<Long> queryTrigrams = new HashSet<>();
+        for (String token : TextTokenizer.tokenize(text)) {
+            forEachTrigram(token, queryTrigrams::add);
+        }
+        // Words shorter than a trigram match too much to narrow anything down
+        if (!loaded || queryTrigrams.isEmpty()) {
+            return null;
+        }
+        Map<Long, Integer> candidates;
+        lock.readLock().lock();
+        try {
+            List<Map<Long, Integer>> lists = new ArrayList<>(queryTrigrams.size());
+            for (Long trigram : queryTrigrams) {
+                Map<Long, Integer> events = postings.get(trigram);
+                if (events == null) {
+                    return List.of();
+                }
+                lists.add(events);
+            }
+            lists.sort(Comparator.comparingInt(Map::size));
+            candidates = new HashMap<>(lists.get(0));
+            for (Map<Long, Integer> events : lists.subList(1, lists.size())) {
+                candidates.entrySet().removeIf(candidate -> !events.containsKey(candidate.getKey()));
+                if (candidates.isEmpty()) {
+                    return List.of();
+                }
+                candidates.replaceAll((eventId, score) -> score + events.get(eventId));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (candidates.size() > limit) {
+            return null;
+        }
+        return candidates.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue()
+                        .thenComparing(Map.Entry.comparingByKey())
+                        .reversed())
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    @Override
+    public void onEventChanged(Event event) {
+        Long eventId = event.getId();
+        boolean published = event.getState() == EventState.PUBLISHED;
+        String annotation = event.getAnnotation();
+        String description = event.getDescription();
+        Runnable update = () -> {
+            lock.writeLock().lock();
+            try {
+                if (published) {
+                    put(eventId, annotation, description);
+                } else {
+                    remove(eventId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    private void put(Long eventId, String annotation, String description) {
+        remove(eventId);
+        Map<Long, Integer> scores = new HashMap<>();
+        count(scores, annotation, ANNOTATION_WEIGHT);
+        count(scores, description, DESCRIPTION_WEIGHT);
+        if (scores.isEmpty()) {
+            return;
+        }
+        scores.forEach((trigram, score) ->
+                postings.computeIfAbsent(trigram, key -> new HashMap<>()).put(eventId, score));
+        trigrams.put(eventId, scores.keySet().stream().mapToLong(Long::longValue).toArray());
+    }
+
+    private void remove(Long eventId) {
+        long[] eventTrigrams = trigrams.remove(eventId);
+        if (eventTrigrams == null) {
+            return;
+        }
+        for (long trigram : eventTrigrams) {
+            Map<Long, Integer> events = postings.get(trigram);
+            events.remove(eventId);
+            if (events.isEmpty()) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    private static void count(Map<Long, Integer> scores, String text, int weight) {
+        if (text == null) {
+            return;
+        }
+        for (String word : TextTokenizer.split(text)) {
+            forEachTrigram(word, trigram -> scores.merge(trigram, weight, Integer::sum));
+        }
+    }
+
+    private static void forEachTrigram(String word, LongConsumer consumer) {
+        for (int i = 0; i + 3 <= word.length(); i++) {
+            consumer.accept((long) word.charAt(i) << 32 | (long) word.charAt(i + 1) << 16 | word.charAt(i + 2));
+        }
+    }
+}
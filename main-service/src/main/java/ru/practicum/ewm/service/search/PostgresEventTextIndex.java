@@ -0,0 +1,39 @@
+package ru.practicum.ewm.service.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.Nullable;
+import ru.practicum.ewm.repository.EventRepository;
+
+import java.util.List;
+
+/**
+ * Runs the text filter itself against the {@code pg_trgm} indexes from {@code schema-postgresql.sql}, so the
+ * events found are exactly those the filter matches, including words found from their middle. They are ranked by
+ * the {@code pg_trgm} word similarity of the text to the annotation, which counts twice, and to the description.
+ */
+@RequiredArgsConstructor
+public class PostgresEventTextIndex implements EventTextIndex {
+    private static final int TRIGRAM_LENGTH = 3;
+
+    private final EventRepository eventRepository;
+
+    @Nullable
+    @Override
+    public List<Long> search(String text, int limit) {
+        // Without a whole trigram the indexes can only be scanned in full
+        if (TextTokenizer.tokenize(text).stream().noneMatch(word -> word.length() >= TRIGRAM_LENGTH)) {
+            return null;
+        }
+        // Unordered, so the scan stops once there are more than the limit; only the ids found are ranked
+        List<Long> ids = eventRepository.findPublishedIdsMatching("%" + text + "%", limit + 1);
+        if (ids.size() > limit) {
+            return null;
+        }
+        return ids.isEmpty() ? ids : eventRepository.rankBySimilarity(text, ids);
+    }
+
+    @Override
+    public boolean isExact() {
+        return true;
+    }
+}
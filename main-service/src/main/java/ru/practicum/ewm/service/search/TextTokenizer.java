@@ -0,0 +1,29 @@
+package ru.practicum.ewm.service.search;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+final class TextTokenizer {
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private TextTokenizer() {
+    }
+
+    /**
+     * Lower-cased runs of letters and digits. Any run in a text that contains {@code text} also contains the
+     * corresponding run of {@code text}.
+     */
+    static List<String> tokenize(String text) {
+        return split(text).stream()
+                .distinct()
+                .toList();
+    }
+
+    static List<String> split(String text) {
+        return Arrays.stream(SEPARATORS.split(text.toLowerCase(Locale.ROOT)))
+                .filter(token -> !token.isEmpty())
+                .toList();
+    }
+}
@@ -1,6 +1,7 @@
 package ru.practicum.ewm.service.validation;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.practicum.ewm.exception.BadRequestException;
 
@@ -11,6 +12,9 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ValidationServiceImpl implements ValidationService {
 
+    @Value("${ewm.search.text-index:none}")
+    private String textIndex;
+
     public void validatePublicEventsSearchParams(String text,
                                                  List<Long> categories,
                                                  Boolean paid,
@@ -35,8 +39,11 @@ public class ValidationServiceImpl implements ValidationService {
     }
 
     public void validateSortParameter(String sort) {
-        if (sort != null && !sort.equals("EVENT_DATE") && !sort.equals("VIEWS")) {
-            throw new BadRequestException("Invalid sort parameter. Must be EVENT_DATE or VIEWS");
+        if (sort != null && !sort.equals("EVENT_DATE") && !sort.equals("VIEWS") && !sort.equals("RELEVANCE")) {
+            throw new BadRequestException("Invalid sort parameter. Must be EVENT_DATE, VIEWS or RELEVANCE");
+        }
+        if ("RELEVANCE".equals(sort) && "none".equalsIgnoreCase(textIndex)) {
+            throw new BadRequestException("Sorting by RELEVANCE needs a text index, ewm.search.text-index is none");
         }
     }
 
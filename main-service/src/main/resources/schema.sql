@@ -25,6 +25,8 @@ CREATE TABLE IF NOT EXISTS events (
     state VARCHAR(20) NOT NULL,
     created_on TIMESTAMP,
     published_on TIMESTAMP,
+    confirmed_requests BIGINT NOT NULL DEFAULT 0,
+    views BIGINT NOT NULL DEFAULT 0,
     CONSTRAINT fk_events_category FOREIGN KEY (category_id) REFERENCES categories(id),
     CONSTRAINT fk_events_initiator FOREIGN KEY (initiator_id) REFERENCES users(id)
 );
@@ -39,6 +41,19 @@ CREATE TABLE IF NOT EXISTS participation_requests (
     CONSTRAINT fk_requests_requester FOREIGN KEY (requester_id) REFERENCES users(id)
 );
 
+ALTER TABLE events ADD COLUMN IF NOT EXISTS confirmed_requests BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE events ADD COLUMN IF NOT EXISTS views BIGINT NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS idx_requests_event_status ON participation_requests (event_id, status);
+
+-- Backfills the counter of databases created before it existed, and repairs any drift on startup
+UPDATE events e SET confirmed_requests = (SELECT COUNT(*) FROM participation_requests r
+                                          WHERE r.event_id = e.id AND r.status = 'CONFIRMED')
+WHERE e.confirmed_requests <> (SELECT COUNT(*) FROM participation_requests r
+                               WHERE r.event_id = e.id AND r.status = 'CONFIRMED');
+
+CREATE INDEX IF NOT EXISTS idx_events_state_views ON events (state, views, id);
+
 CREATE TABLE IF NOT EXISTS compilations (
     id BIGSERIAL PRIMARY KEY,
     title VARCHAR(50) NOT NULL,
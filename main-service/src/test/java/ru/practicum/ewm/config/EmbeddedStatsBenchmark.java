@@ -0,0 +1,85 @@
+package ru.practicum.ewm.config;
+
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import ru.practicum.stats.client.StatsClient;
+import ru.practicum.stats.client.StatsClientProperties;
+import ru.practicum.stats.client.StatsHttpTransport;
+import ru.practicum.stats.columnar.ColumnarHitStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.LongStream;
+
+/**
+ * Per-call latency of {@link StatsClient} against a running stats-server and against the embedded columnar engine
+ * of {@link EmbeddedStatsConfig}, with no client cache or coalescing. Not a unit test, run it by hand:
+ * <pre>
+ * mvn -pl main-service -am test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp main-service/target/test-classes:main-service/target/classes:$(cat main-service/cp.txt) \
+ *     ru.practicum.ewm.config.EmbeddedStatsBenchmark [server url]
+ * </pre>
+ */
+public class EmbeddedStatsBenchmark {
+    private static final String APP = "bench";
+    private static final int EVENTS = 100;
+    private static final LocalDateTime VIEWS_START = LocalDateTime.of(2020, 1, 1, 0, 0, 0);
+
+    public static void main(String[] args) throws IOException {
+        String serverUrl = args.length > 0 ? args[0] : "http://localhost:9090";
+        StatsClientProperties properties = new StatsClientProperties();
+        StatsClient remote = new StatsClient(new StatsHttpTransport(properties.getHttp()).getRestTemplate(),
+                serverUrl, properties);
+
+        Path directory = Files.createTempDirectory("embedded-stats-bench");
+        ColumnarHitStore store = new ColumnarHitStore(directory, Duration.ofHours(1), 1 << 20, Duration.ofMinutes(10));
+        StatsClient embedded;
+        try (ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory()) {
+            embedded = new StatsClient(new EmbeddedStatsConfig().embeddedStats(store, validatorFactory.getValidator(),
+                    10000, 100000), properties);
+        }
+
+        for (StatsClient client : List.of(remote, embedded)) {
+            for (int i = 0; i < 5000; i++) {
+                client.recordHit(APP, "/events/" + i % EVENTS, "10.0." + i % 7 + "." + i % 13, LocalDateTime.now());
+            }
+        }
+        List<Long> eventIds = LongStream.range(0, 50).boxed().toList();
+        measure("remote", remote, eventIds);
+        measure("embedded", embedded, eventIds);
+        remote.close();
+        embedded.close();
+        store.close();
+        System.exit(0);
+    }
+
+    private static void measure(String name, StatsClient client, List<Long> eventIds) {
+        run(name + " recordHit", 3000, 10000,
+                i -> client.recordHit(APP, "/events/" + i % EVENTS, "10.1.0." + i % 200, LocalDateTime.now()));
+        run(name + " getViews, 1 event", 2000, 5000,
+                i -> client.getViews(APP, (long) (i % EVENTS), VIEWS_START, LocalDateTime.now(), true));
+        run(name + " getViewsForEvents, 50", 1000, 3000,
+                i -> client.getViewsForEvents(APP, eventIds, VIEWS_START, LocalDateTime.now(), true));
+    }
+
+    private static void run(String name, int warmup, int calls, IntConsumer call) {
+        for (int i = 0; i < warmup; i++) {
+            call.accept(i);
+        }
+        long[] nanos = new long[calls];
+        for (int i = 0; i < calls; i++) {
+            long start = System.nanoTime();
+            call.accept(i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-32s p50 %8.1f us  p99 %8.1f us%n", name,
+                nanos[calls / 2] / 1000.0, nanos[calls * 99 / 100] / 1000.0);
+    }
+}
@@ -0,0 +1,153 @@
+package ru.practicum.ewm.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import ru.practicum.ewm.model.category.Category;
+import ru.practicum.ewm.model.event.Event;
+import ru.practicum.ewm.model.event.EventState;
+import ru.practicum.ewm.model.location.Location;
+import ru.practicum.ewm.model.user.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class EventRepositoryTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    private Statistics statistics;
+    private User initiator;
+    private Category category;
+    private final List<Long> availableIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+
+        initiator = entityManager.persist(User.builder().name("Initiator").email("initiator@mail.ru").build());
+        category = entityManager.persist(Category.builder().name("Concerts").build());
+        // Events alternate between unlimited and three places, some of the limited ones are full
+        for (int i = 0; i < 15; i++) {
+            int limit = i % 2 == 0 ? 0 : 3;
+            Event event = entityManager.persist(event(initiator, category, EventState.PUBLISHED, limit));
+            long confirmed = i % 3 == 2 ? 3 : 1;
+            eventRepository.setConfirmedRequests(event.getId(), confirmed);
+            if (limit == 0 || confirmed < limit) {
+                availableIds.add(event.getId());
+            }
+        }
+        entityManager.persist(event(initiator, category, EventState.PENDING, 0));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void onlyAvailablePagesAreFullAndLoadedWithOneSelect() {
+        int size = 4;
+        List<Long> found = new ArrayList<>();
+        for (int page = 0; page * size < availableIds.size(); page++) {
+            statistics.clear();
+
+            List<Event> events = eventRepository.findPublishedEvents(null, null, null, NOW, null, true, null,
+                    PageRequest.of(page, size, Sort.by("id")));
+            events.forEach(event -> {
+                assertThat(event.getCategory().getName()).isEqualTo("Concerts");
+                assertThat(event.getInitiator().getName()).isEqualTo("Initiator");
+            });
+
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+            assertThat(events).hasSize(Math.min(size, availableIds.size() - page * size));
+            events.forEach(event -> found.add(event.getId()));
+        }
+
+        assertThat(found).containsExactlyElementsOf(availableIds);
+    }
+
+    @Test
+    void fullEventsAreReturnedWithoutOnlyAvailable() {
+        statistics.clear();
+
+        List<Event> events = eventRepository.findPublishedEvents(null, null, null, NOW, null, false, null,
+                PageRequest.of(0, 100));
+
+        assertThat(events).hasSize(15);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void addConfirmedRequestsStopsAtTheParticipantLimit() {
+        Long eventId = persistEvent(3, 1);
+
+        assertThat(eventRepository.addConfirmedRequests(eventId, 2)).isEqualTo(1);
+        assertThat(eventRepository.addConfirmedRequests(eventId, 1)).isZero();
+
+        assertThat(confirmedRequests(eventId)).isEqualTo(3);
+    }
+
+    @Test
+    void addConfirmedRequestsIgnoresTheLimitOfUnlimitedEvents() {
+        Long eventId = persistEvent(0, 7);
+
+        assertThat(eventRepository.addConfirmedRequests(eventId, 5)).isEqualTo(1);
+
+        assertThat(confirmedRequests(eventId)).isEqualTo(12);
+    }
+
+    @Test
+    void removeConfirmedRequestsNeverGoesBelowZero() {
+        Long eventId = persistEvent(3, 1);
+
+        assertThat(eventRepository.removeConfirmedRequests(eventId, 2)).isZero();
+        assertThat(eventRepository.removeConfirmedRequests(eventId, 1)).isEqualTo(1);
+        assertThat(eventRepository.removeConfirmedRequests(eventId, 1)).isZero();
+
+        assertThat(confirmedRequests(eventId)).isZero();
+    }
+
+    private Long persistEvent(int participantLimit, long confirmed) {
+        Long eventId = entityManager.persist(event(initiator, category, EventState.PUBLISHED, participantLimit))
+                .getId();
+        eventRepository.setConfirmedRequests(eventId, confirmed);
+        return eventId;
+    }
+
+    private long confirmedRequests(Long eventId) {
+        entityManager.clear();
+        return entityManager.find(Event.class, eventId).getConfirmedRequests();
+    }
+
+    private static Event event(User initiator, Category category, EventState state, int participantLimit) {
+        return Event.builder()
+                .annotation("Annotation of a concert for the repository test")
+                .description("Description of a concert for the repository test")
+                .category(category)
+                .initiator(initiator)
+                .eventDate(NOW.plusDays(10))
+                .location(new Location(55.75f, 37.62f))
+                .paid(false)
+                .participantLimit(participantLimit)
+                .requestModeration(true)
+                .title("Concert")
+                .state(state)
+                .createdOn(NOW)
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package ru.practicum.ewm.service.event;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import ru.practicum.ewm.model.category.Category;
+import ru.practicum.ewm.model.event.Event;
+import ru.practicum.ewm.model.event.EventState;
+import ru.practicum.ewm.model.location.Location;
+import ru.practicum.ewm.model.participationRequest.ParticipationRequest;
+import ru.practicum.ewm.model.participationRequest.ParticipationRequestStatus;
+import ru.practicum.ewm.model.user.User;
+import ru.practicum.ewm.repository.EventRepository;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(ConfirmedRequestsRepairJob.class)
+class ConfirmedRequestsRepairJobTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private ConfirmedRequestsRepairJob repairJob;
+
+    private User initiator;
+    private Category category;
+    private int users;
+
+    @BeforeEach
+    void setUp() {
+        initiator = entityManager.persist(User.builder().name("Initiator").email("initiator@mail.ru").build());
+        category = entityManager.persist(Category.builder().name("Concerts").build());
+    }
+
+    @Test
+    void countersThatDisagreeWithTheRequestsAreRecomputed() {
+        Event tooHigh = event(ParticipationRequestStatus.CONFIRMED, ParticipationRequestStatus.CONFIRMED,
+                ParticipationRequestStatus.PENDING);
+        Event tooLow = event(ParticipationRequestStatus.CONFIRMED, ParticipationRequestStatus.CANCELED);
+        Event correct = event(ParticipationRequestStatus.CONFIRMED);
+        eventRepository.setConfirmedRequests(tooHigh.getId(), 5);
+        eventRepository.setConfirmedRequests(correct.getId(), 1);
+        assertThat(eventRepository.findIdsWithStaleConfirmedRequests())
+                .containsExactlyInAnyOrder(tooHigh.getId(), tooLow.getId());
+
+        repairJob.repair();
+
+        assertThat(eventRepository.findIdsWithStaleConfirmedRequests()).isEmpty();
+        entityManager.clear();
+        assertThat(entityManager.find(Event.class, tooHigh.getId()).getConfirmedRequests()).isEqualTo(2);
+        assertThat(entityManager.find(Event.class, tooLow.getId()).getConfirmedRequests()).isEqualTo(1);
+        assertThat(entityManager.find(Event.class, correct.getId()).getConfirmedRequests()).isEqualTo(1);
+    }
+
+    private Event event(ParticipationRequestStatus... statuses) {
+        Event event = entityManager.persist(Event.builder()
+                .annotation("Annotation of a concert for the repair job test")
+                .description("Description of a concert for the repair job test")
+                .category(category)
+                .initiator(initiator)
+                .eventDate(NOW.plusDays(10))
+                .location(new Location(55.75f, 37.62f))
+                .paid(false)
+                .participantLimit(0)
+                .requestModeration(true)
+                .title("Concert")
+                .state(EventState.PUBLISHED)
+                .createdOn(NOW)
+                .build());
+        for (ParticipationRequestStatus status : statuses) {
+            users++;
+            User requester = entityManager.persist(User.builder()
+                    .name("User " + users)
+                    .email("user" + users + "@mail.ru")
+                    .build());
+            entityManager.persist(ParticipationRequest.builder()
+                    .created(NOW)
+                    .event(event)
+                    .requester(requester)
+                    .status(status)
+                    .build());
+        }
+        entityManager.flush();
+        return event;
+    }
+}
@@ -0,0 +1,119 @@
+package ru.practicum.ewm.service.request;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import ru.practicum.ewm.dto.participationRequest.ParticipationRequestDto;
+import ru.practicum.ewm.exception.ConflictException;
+import ru.practicum.ewm.mapper.RequestMapper;
+import ru.practicum.ewm.model.category.Category;
+import ru.practicum.ewm.model.event.Event;
+import ru.practicum.ewm.model.event.EventState;
+import ru.practicum.ewm.model.location.Location;
+import ru.practicum.ewm.model.user.User;
+import ru.practicum.ewm.repository.EventRepository;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@Import({RequestServiceImpl.class, RequestMapper.class})
+class RequestServiceImplTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private RequestService requestService;
+
+    private User initiator;
+    private Category category;
+
+    @BeforeEach
+    void setUp() {
+        initiator = entityManager.persist(User.builder().name("Initiator").email("initiator@mail.ru").build());
+        category = entityManager.persist(Category.builder().name("Concerts").build());
+    }
+
+    @Test
+    void requestOverTheLimitIsRejectedWhenTheLoadedCounterIsStale() {
+        Event event = entityManager.persist(event(2, false));
+        User first = user(1);
+        User second = user(2);
+
+        requestService.addParticipationRequest(first.getId(), event.getId());
+        // Another request took the last place behind the back of the loaded entity
+        eventRepository.setConfirmedRequests(event.getId(), 2);
+
+        assertThatThrownBy(() -> requestService.addParticipationRequest(second.getId(), event.getId()))
+                .isInstanceOf(ConflictException.class);
+        assertThat(confirmedRequests(event.getId())).isEqualTo(2);
+    }
+
+    @Test
+    void cancelingAConfirmedRequestFreesItsPlace() {
+        Event event = entityManager.persist(event(1, true));
+        User first = user(1);
+        User second = user(2);
+        ParticipationRequestDto request = requestService.addParticipationRequest(first.getId(), event.getId());
+        requestService.confirmRequest(initiator.getId(), event.getId(), request.getId());
+        assertThat(confirmedRequests(event.getId())).isEqualTo(1);
+
+        requestService.cancelRequest(first.getId(), request.getId());
+        requestService.cancelRequest(first.getId(), request.getId());
+        assertThat(confirmedRequests(event.getId())).isZero();
+
+        ParticipationRequestDto next = requestService.addParticipationRequest(second.getId(), event.getId());
+        assertThat(requestService.confirmRequest(initiator.getId(), event.getId(), next.getId()).getStatus())
+                .isEqualTo("CONFIRMED");
+        assertThat(confirmedRequests(event.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void rejectingAConfirmedRequestFreesItsPlace() {
+        Event event = entityManager.persist(event(1, true));
+        User first = user(1);
+        ParticipationRequestDto request = requestService.addParticipationRequest(first.getId(), event.getId());
+        requestService.confirmRequest(initiator.getId(), event.getId(), request.getId());
+
+        requestService.rejectRequest(initiator.getId(), event.getId(), request.getId());
+
+        assertThat(confirmedRequests(event.getId())).isZero();
+    }
+
+    private User user(int n) {
+        return entityManager.persist(User.builder().name("User " + n).email("user" + n + "@mail.ru").build());
+    }
+
+    private long confirmedRequests(Long eventId) {
+        entityManager.flush();
+        entityManager.clear();
+        return entityManager.find(Event.class, eventId).getConfirmedRequests();
+    }
+
+    private Event event(int participantLimit, boolean requestModeration) {
+        return Event.builder()
+                .annotation("Annotation of a concert for the request service test")
+                .description("Description of a concert for the request service test")
+                .category(category)
+                .initiator(initiator)
+                .eventDate(NOW.plusDays(10))
+                .location(new Location(55.75f, 37.62f))
+                .paid(false)
+                .participantLimit(participantLimit)
+                .requestModeration(requestModeration)
+                .title("Concert")
+                .state(EventState.PUBLISHED)
+                .createdOn(NOW)
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package ru.practicum.ewm.service.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.ewm.model.event.Event;
+import ru.practicum.ewm.model.event.EventState;
+import ru.practicum.ewm.repository.EventRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InMemoryEventTextIndexTest {
+    private static final String[] WORDS = {"концерт", "Концертный", "jazz", "Jazz-club", "рок", "опера", "open-air",
+            "air", "фестиваль", "лекция", "tour", "detour", "кино", "кинотеатр", "2026", "x"};
+    private static final int EVENTS = 300;
+    private static final int LIMIT = 1000;
+
+    private final Random random = new Random(42);
+    private final List<Event> events = new ArrayList<>();
+    private InMemoryEventTextIndex index;
+
+    @BeforeEach
+    void setUp() {
+        EventRepository eventRepository = mock(EventRepository.class);
+        when(eventRepository.findPublishedTextsAfter(anyLong(), any())).thenReturn(List.of());
+        index = new InMemoryEventTextIndex(eventRepository);
+        index.load();
+        for (long id = 1; id <= EVENTS; id++) {
+            Event event = Event.builder()
+                    .id(id)
+                    .annotation(text(4))
+                    .description(text(12))
+                    .state(id % 10 == 0 ? EventState.PENDING : EventState.PUBLISHED)
+                    .build();
+            events.add(event);
+            index.onEventChanged(event);
+        }
+    }
+
+    @Test
+    void candidatesContainEveryEventTheTextFilterMatches() {
+        List<String> queries = new ArrayList<>(List.of("концерт", "ЦЕРТ", "jazz-cl", "air", "our", "кино 2026",
+                "open-air фест", "xyz", "опера, рок"));
+        for (int i = 0; i < 200; i++) {
+            // Pieces of the texts, often cut mid-word and across words
+            String text = events.get(random.nextInt(EVENTS)).getDescription();
+            int from = random.nextInt(text.length() - 3);
+            queries.add(text.substring(from, Math.min(text.length(), from + 3 + random.nextInt(15))));
+        }
+
+        for (String query : queries) {
+            List<Long> candidates = index.search(query, LIMIT);
+            if (candidates == null) {
+                continue;
+            }
+            assertThat(candidates).as(query).containsAll(matching(query));
+            assertThat(candidates).as(query).doesNotHaveDuplicates();
+        }
+    }
+
+    @Test
+    void eventsThatAreNoLongerPublishedAreDropped() {
+        Event event = events.get(0);
+        event.setAnnotation("уникальный анонс");
+        index.onEventChanged(event);
+        assertThat(index.search("уникальный", LIMIT)).containsExactly(event.getId());
+
+        event.setState(EventState.CANCELED);
+        index.onEventChanged(event);
+
+        assertThat(index.search("уникальный", LIMIT)).isEmpty();
+    }
+
+    // What the text filter of EventRepository matches
+    private List<Long> matching(String query) {
+        String text = query.toLowerCase(Locale.ROOT);
+        return events.stream()
+                .filter(event -> event.getState() == EventState.PUBLISHED)
+                .filter(event -> event.getAnnotation().toLowerCase(Locale.ROOT).contains(text)
+                        || event.getDescription().toLowerCase(Locale.ROOT).contains(text))
+                .map(Event::getId)
+                .toList();
+    }
+
+    private String text(int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(random.nextInt(4) == 0 ? ", " : " ");
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
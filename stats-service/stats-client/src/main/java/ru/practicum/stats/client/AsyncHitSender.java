@@ -0,0 +1,169 @@
+package ru.practicum.stats.client;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.stats.dto.EndpointHitDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+@Slf4j
+public class AsyncHitSender implements AutoCloseable {
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        BLOCK,
+        SPILL
+    }
+
+    private final Consumer<List<EndpointHitDto>> batchSender;
+    private final Consumer<List<EndpointHitDto>> spillHandler;
+    private final OverflowPolicy overflowPolicy;
+    private final BlockingQueue<EndpointHitDto> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long blockTimeoutMs;
+    private final long shutdownTimeoutMs;
+    private final Thread sender;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public AsyncHitSender(Consumer<List<EndpointHitDto>> batchSender,
+                          Consumer<List<EndpointHitDto>> spillHandler,
+                          StatsClientProperties.Async properties) {
+        this.batchSender = batchSender;
+        this.spillHandler = spillHandler;
+        this.overflowPolicy = properties.getOverflow();
+        this.queue = new ArrayBlockingQueue<>(properties.getCapacity());
+        this.batchSize = properties.getBatchSize();
+        this.flushIntervalMs = properties.getFlushIntervalMs();
+        this.blockTimeoutMs = properties.getBlockTimeoutMs();
+        this.shutdownTimeoutMs = properties.getShutdownTimeoutMs();
+
+        this.sender = new Thread(this::run, "stats-hit-sender");
+        this.sender.setDaemon(true);
+        this.sender.start();
+        log.info("Async hit sender started: capacity={}, batchSize={}, overflow={}",
+                properties.getCapacity(), batchSize, overflowPolicy);
+    }
+
+    public void submit(EndpointHitDto hit) {
+        if (!running) {
+            spill(List.of(hit));
+            return;
+        }
+        if (queue.offer(hit)) {
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case DROP_OLDEST -> {
+                while (!queue.offer(hit)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                log.debug("Hit queue is full, dropped the oldest hit");
+            }
+            case BLOCK -> {
+                try {
+                    if (!queue.offer(hit, blockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                        dropped.incrementAndGet();
+                        log.warn("Hit queue stayed full for {} ms, hit dropped: uri={}", blockTimeoutMs, hit.getUri());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                }
+            }
+            case SPILL -> spill(List.of(hit));
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getSpilled() {
+        return spilled.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        log.info("Draining {} queued hits", queue.size());
+        try {
+            sender.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (sender.isAlive()) {
+            sender.interrupt();
+            log.warn("Async hit sender did not drain within {} ms, {} hits lost", shutdownTimeoutMs, queue.size());
+        }
+        log.info("Async hit sender stopped: sent={}, dropped={}, spilled={}, failed={}",
+                sent.get(), dropped.get(), spilled.get(), failed.get());
+    }
+
+    private void run() {
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                EndpointHitDto first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<EndpointHitDto> batch) {
+        try {
+            batchSender.accept(batch);
+            sent.addAndGet(batch.size());
+        } catch (RuntimeException e) {
+            failed.addAndGet(batch.size());
+            log.warn("Failed to send {} hits to stats service: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private void spill(List<EndpointHitDto> hits) {
+        spilled.addAndGet(hits.size());
+        try {
+            spillHandler.accept(hits);
+        } catch (RuntimeException e) {
+            log.warn("Failed to spill {} hits: {}", hits.size(), e.getMessage());
+        }
+    }
+}
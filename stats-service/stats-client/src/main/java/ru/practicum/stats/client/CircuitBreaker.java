@@ -0,0 +1,169 @@
+package ru.practicum.stats.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Count-based circuit breaker. It opens when the failure rate over the last {@code windowSize} calls reaches
+ * the threshold, rejects calls while open, and after {@code openDurationMs} lets a few trial calls through:
+ * all of them must succeed to close it again, any failure opens it for another period.
+ */
+@Slf4j
+public class CircuitBreaker {
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final String name;
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+
+    private State state = State.CLOSED;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private long openedAt;
+    private int halfOpenStarted;
+    private int halfOpenSucceeded;
+
+    private final AtomicLong shortCircuited = new AtomicLong();
+    private final Map<State, AtomicLong> transitions = new EnumMap<>(State.class);
+
+    public CircuitBreaker(String name, StatsClientProperties.Breaker properties) {
+        this.name = name;
+        this.window = new boolean[properties.getWindowSize()];
+        this.minimumCalls = Math.min(properties.getMinimumCalls(), properties.getWindowSize());
+        this.failureRateThreshold = properties.getFailureRateThreshold();
+        this.openDurationNanos = properties.getOpenDurationMs() * 1_000_000L;
+        this.halfOpenCalls = properties.getHalfOpenCalls();
+        for (State value : State.values()) {
+            transitions.put(value, new AtomicLong());
+        }
+    }
+
+    public <T> T execute(Supplier<T> call) {
+        if (!tryAcquire()) {
+            throw new CircuitOpenException("Circuit breaker " + name + " is open");
+        }
+        T result;
+        try {
+            result = call.get();
+        } catch (HttpClientErrorException | IllegalArgumentException e) {
+            // The server answered, the request itself was wrong; embedded stats reject it with an exception
+            onSuccess();
+            throw e;
+        } catch (RuntimeException e) {
+            onFailure();
+            throw e;
+        }
+        onSuccess();
+        return result;
+    }
+
+    public void execute(Runnable call) {
+        execute(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized boolean isCallPermitted() {
+        return state == State.CLOSED;
+    }
+
+    public long getShortCircuited() {
+        return shortCircuited.get();
+    }
+
+    public long getTransitions(State to) {
+        return transitions.get(to).get();
+    }
+
+    private synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                shortCircuited.incrementAndGet();
+                return false;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenStarted >= halfOpenCalls) {
+                shortCircuited.incrementAndGet();
+                return false;
+            }
+            halfOpenStarted++;
+        }
+        return true;
+    }
+
+    private synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            halfOpenSucceeded++;
+            if (halfOpenSucceeded >= halfOpenCalls) {
+                transition(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    private synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+                transition(State.OPEN);
+            }
+        }
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void transition(State to) {
+        State from = state;
+        state = to;
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+        halfOpenStarted = 0;
+        halfOpenSucceeded = 0;
+        if (to == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+        transitions.get(to).incrementAndGet();
+        if (to == State.CLOSED) {
+            log.info("Circuit breaker {} changed from {} to {}", name, from, to);
+        } else {
+            log.warn("Circuit breaker {} changed from {} to {}", name, from, to);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.stats.client;
+
+public class CircuitOpenException extends RuntimeException {
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.stats.client;
+
+import org.springframework.lang.Nullable;
+import ru.practicum.stats.dto.EndpointHitBatchResultDto;
+import ru.practicum.stats.dto.EndpointHitDto;
+import ru.practicum.stats.dto.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Stats storage running in the same JVM, used by {@link StatsClient} in {@link StatsClient.Mode#EMBEDDED} mode
+ * instead of HTTP calls to stats-server.
+ */
+public interface EmbeddedStats {
+    /**
+     * @param batchKey a batch with a key that was already saved is skipped, like the Idempotency-Key header
+     */
+    EndpointHitBatchResultDto saveHits(List<EndpointHitDto> hits, @Nullable String batchKey);
+
+    List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, @Nullable List<String> uris, boolean unique);
+}
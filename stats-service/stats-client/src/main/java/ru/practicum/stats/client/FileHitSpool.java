@@ -0,0 +1,377 @@
+package ru.practicum.stats.client;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.stats.dto.EndpointHitDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only spool of hits on the local disk, split into segment files that are deleted once replayed.
+ * <p>
+ * A record is {@code [length][crc32][app, uri, ip, timestamp, count, batch key]}. The records of a stored batch are
+ * adjacent and are replayed as one batch under the key it was first sent with. The offset file holds the replay
+ * position and, while a batch is being sent, the end of that batch; it is written before the batch goes out, so
+ * after a crash the same records are resent under the same key and the server can drop the duplicate.
+ */
+@Slf4j
+public class FileHitSpool implements HitFallback {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final int batchSize;
+    private final String spoolId;
+    private final ReentrantLock replayLock = new ReentrantLock();
+
+    private FileChannel writer;
+    private long writerSegment;
+    private long readSegment;
+    private long readPosition;
+    private long pendingEnd;
+    private long pending;
+
+    public FileHitSpool(StatsClientProperties.Spool properties, int batchSize) {
+        this.dir = Path.of(properties.getDir());
+        this.segmentBytes = properties.getSegmentBytes();
+        this.fsync = properties.isFsync();
+        this.batchSize = batchSize;
+        try {
+            Files.createDirectories(dir);
+            this.spoolId = loadSpoolId();
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open hit spool " + dir, e);
+        }
+        log.info("Hit spool opened at {}: {} hits pending, segment {} at offset {}",
+                dir, pending, readSegment, readPosition);
+    }
+
+    @Override
+    public synchronized void store(List<EndpointHitDto> hits, String batchKey) {
+        ByteBuffer buffer = encode(hits, batchKey);
+        if (buffer.remaining() == 0) {
+            return;
+        }
+        try {
+            if (writer.size() > 0 && writer.size() + buffer.remaining() > segmentBytes) {
+                rotate();
+            }
+            while (buffer.hasRemaining()) {
+                writer.write(buffer);
+            }
+            if (fsync) {
+                writer.force(false);
+            }
+            pending += hits.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to hit spool " + dir, e);
+        }
+    }
+
+    @Override
+    public void replay(BiConsumer<String, List<EndpointHitDto>> sender) {
+        if (!replayLock.tryLock()) {
+            return;
+        }
+        try {
+            while (true) {
+                Batch batch = nextBatch();
+                if (batch == null) {
+                    return;
+                }
+                // The batch stays pending until acknowledged, a failure leaves it to be resent as is
+                sender.accept(batch.key() != null ? batch.key() : spoolId + ":" + batch.segment() + ":" + batch.start(),
+                        batch.hits());
+                acknowledge(batch);
+                log.debug("Replayed {} spooled hits from segment {}", batch.hits().size(), batch.segment());
+            }
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    @Override
+    public synchronized long size() {
+        return pending;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.force(false);
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Failed to close hit spool {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private synchronized Batch nextBatch() {
+        try {
+            while (true) {
+                long end = pendingEnd >= 0 ? pendingEnd : segmentEnd(readSegment);
+                Segment read = readRecords(readSegment, readPosition, end, pendingEnd >= 0 ? Integer.MAX_VALUE
+                        : batchSize, true);
+                if (!read.hits().isEmpty()) {
+                    pendingEnd = read.end();
+                    writeOffset();
+                    return new Batch(readSegment, readPosition, read.end(), read.key(), read.hits());
+                }
+                if (readSegment >= writerSegment) {
+                    return null;
+                }
+                // A sealed segment is fully replayed
+                Files.deleteIfExists(segmentPath(readSegment));
+                readSegment++;
+                readPosition = 0;
+                pendingEnd = -1;
+                writeOffset();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read hit spool " + dir, e);
+        }
+    }
+
+    private synchronized void acknowledge(Batch batch) {
+        readPosition = batch.end();
+        pendingEnd = -1;
+        pending -= batch.hits().size();
+        try {
+            writeOffset();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write hit spool offset " + dir, e);
+        }
+    }
+
+    private long segmentEnd(long segment) throws IOException {
+        if (segment == writerSegment) {
+            return writer.size();
+        }
+        Path path = segmentPath(segment);
+        return Files.exists(path) ? Files.size(path) : 0;
+    }
+
+    /**
+     * @param oneBatch stop at the first record of another batch; records spooled without a key are read up to
+     *                 {@code limit}, a keyed batch is never split
+     */
+    private Segment readRecords(long segment, long from, long to, int limit, boolean oneBatch) throws IOException {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        String key = null;
+        Path path = segmentPath(segment);
+        if (from >= to || !Files.exists(path)) {
+            return new Segment(hits, from, null);
+        }
+        long position = from;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while ((key != null || hits.size() < limit) && position + HEADER_BYTES <= to) {
+                header.clear();
+                readFully(channel, header, position);
+                header.flip();
+                int length = header.getInt();
+                long checksum = header.getInt() & 0xFFFFFFFFL;
+                if (length <= 0 || length > MAX_RECORD_BYTES || position + HEADER_BYTES + length > to) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(channel, payload, position + HEADER_BYTES);
+                CRC32 crc = new CRC32();
+                crc.update(payload.array());
+                if (crc.getValue() != checksum) {
+                    log.error("Corrupted record at offset {} of {}, skipping the rest of the segment",
+                            position, path);
+                    return new Segment(hits, to, key);
+                }
+                SpooledHit record = decode(payload.array());
+                if (oneBatch && !hits.isEmpty() && !Objects.equals(key, record.batchKey())) {
+                    break;
+                }
+                key = record.batchKey();
+                hits.add(record.hit());
+                position += HEADER_BYTES + length;
+            }
+        }
+        return new Segment(hits, position, key);
+    }
+
+    private void open() throws IOException {
+        List<Long> segments = listSegments();
+        Path offsetPath = dir.resolve("offset");
+        if (Files.exists(offsetPath)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(offsetPath))) {
+                readSegment = in.readLong();
+                readPosition = in.readLong();
+                pendingEnd = in.readLong();
+            }
+        } else {
+            readSegment = segments.isEmpty() ? 0 : segments.get(0);
+            readPosition = 0;
+            pendingEnd = -1;
+        }
+        for (long segment : segments) {
+            if (segment < readSegment) {
+                Files.deleteIfExists(segmentPath(segment));
+            }
+        }
+
+        writerSegment = segments.isEmpty() ? readSegment : Math.max(readSegment, segments.get(segments.size() - 1));
+        Path writerPath = segmentPath(writerSegment);
+        writer = FileChannel.open(writerPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // A crash in the middle of an append leaves a partial record behind
+        long valid = readRecords(writerSegment, 0, writer.size(), Integer.MAX_VALUE, false).end();
+        if (valid < writer.size()) {
+            log.warn("Truncating partial record at offset {} of {}", valid, writerPath);
+            writer.truncate(valid);
+        }
+        writer.position(valid);
+        if (readSegment == writerSegment && (pendingEnd > valid || readPosition > valid)) {
+            readPosition = Math.min(readPosition, valid);
+            pendingEnd = -1;
+        }
+
+        for (long segment = readSegment; segment <= writerSegment; segment++) {
+            long from = segment == readSegment ? readPosition : 0;
+            pending += readRecords(segment, from, segmentEnd(segment), Integer.MAX_VALUE, false).hits().size();
+        }
+    }
+
+    private void rotate() throws IOException {
+        writer.force(false);
+        writer.close();
+        writerSegment++;
+        writer = FileChannel.open(segmentPath(writerSegment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        log.debug("Hit spool rotated to segment {}", writerSegment);
+    }
+
+    private void writeOffset() throws IOException {
+        Path tmp = dir.resolve("offset.tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(3 * Long.BYTES)
+                .putLong(readSegment)
+                .putLong(readPosition)
+                .putLong(pendingEnd)
+                .flip();
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, dir.resolve("offset"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private String loadSpoolId() throws IOException {
+        Path path = dir.resolve("spool.id");
+        if (Files.exists(path)) {
+            return Files.readString(path, StandardCharsets.UTF_8).trim();
+        }
+        String id = UUID.randomUUID().toString();
+        Files.writeString(path, id, StandardCharsets.UTF_8);
+        return id;
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private ByteBuffer encode(List<EndpointHitDto> hits, String batchKey) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        for (EndpointHitDto hit : hits) {
+            record.reset();
+            try (DataOutputStream out = new DataOutputStream(record)) {
+                out.writeUTF(nullToEmpty(hit.getApp()));
+                out.writeUTF(nullToEmpty(hit.getUri()));
+                out.writeUTF(nullToEmpty(hit.getIp()));
+                out.writeUTF(nullToEmpty(hit.getTimestamp()));
+                out.writeInt(hit.getCount() != null ? hit.getCount() : 1);
+                out.writeUTF(batchKey);
+            } catch (IOException e) {
+                log.warn("Hit cannot be spooled and is dropped: uri={}, {}", hit.getUri(), e.getMessage());
+                continue;
+            }
+            byte[] payload = record.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            bytes.writeBytes(ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(payload.length)
+                    .putInt((int) crc.getValue())
+                    .array());
+            bytes.writeBytes(payload);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private SpooledHit decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        EndpointHitDto hit = EndpointHitDto.builder()
+                .app(in.readUTF())
+                .uri(in.readUTF())
+                .ip(in.readUTF())
+                .timestamp(in.readUTF())
+                .build();
+        // Records spooled before hits carried a count have none, and older ones no batch key either
+        if (in.available() >= Integer.BYTES) {
+            int count = in.readInt();
+            hit.setCount(count > 1 ? count : null);
+        }
+        String batchKey = in.available() > 0 ? in.readUTF() : null;
+        return new SpooledHit(hit, batchKey);
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment");
+            }
+        }
+    }
+
+    private record SpooledHit(EndpointHitDto hit, String batchKey) {
+    }
+
+    private record Segment(List<EndpointHitDto> hits, long end, String key) {
+    }
+
+    private record Batch(long segment, long start, long end, String key, List<EndpointHitDto> hits) {
+    }
+}
@@ -0,0 +1,107 @@
+package ru.practicum.stats.client;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.stats.dto.EndpointHitDto;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Folds identical {@code (app, uri, ip)} hits within a short window into one hit with a count and the timestamp
+ * of the first of them.
+ */
+@Slf4j
+public class HitAggregator implements AutoCloseable {
+    private final Consumer<List<EndpointHitDto>> downstream;
+    private final int maxKeys;
+    private final ScheduledExecutorService flusher;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong emitted = new AtomicLong();
+
+    private Map<Key, EndpointHitDto> window = new HashMap<>();
+
+    public HitAggregator(Consumer<List<EndpointHitDto>> downstream, StatsClientProperties.Aggregate properties) {
+        this.downstream = downstream;
+        this.maxKeys = properties.getMaxKeys();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-hit-aggregator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, properties.getWindowMs(), properties.getWindowMs(),
+                TimeUnit.MILLISECONDS);
+        log.info("Hit aggregation enabled: window={} ms, maxKeys={}", properties.getWindowMs(), maxKeys);
+    }
+
+    public void add(EndpointHitDto hit) {
+        received.incrementAndGet();
+        boolean full;
+        synchronized (this) {
+            EndpointHitDto aggregated = window.get(new Key(hit.getApp(), hit.getUri(), hit.getIp()));
+            if (aggregated != null) {
+                aggregated.setCount(aggregated.getCount() + (hit.getCount() != null ? hit.getCount() : 1));
+                return;
+            }
+            window.put(new Key(hit.getApp(), hit.getUri(), hit.getIp()), EndpointHitDto.builder()
+                    .app(hit.getApp())
+                    .uri(hit.getUri())
+                    .ip(hit.getIp())
+                    .timestamp(hit.getTimestamp())
+                    .count(hit.getCount() != null ? hit.getCount() : 1)
+                    .build());
+            full = window.size() >= maxKeys;
+        }
+        if (full) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getEmitted() {
+        return emitted.get();
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    private void flush() {
+        Map<Key, EndpointHitDto> flushed;
+        synchronized (this) {
+            if (window.isEmpty()) {
+                return;
+            }
+            flushed = window;
+            window = new HashMap<>();
+        }
+        List<EndpointHitDto> hits = new ArrayList<>(flushed.values());
+        // Single hits go out without a count, exactly as they did before aggregation
+        for (EndpointHitDto hit : hits) {
+            if (hit.getCount() == 1) {
+                hit.setCount(null);
+            }
+        }
+        emitted.addAndGet(hits.size());
+        try {
+            downstream.accept(hits);
+        } catch (RuntimeException e) {
+            log.warn("Failed to pass {} aggregated hits on: {}", hits.size(), e.getMessage());
+        }
+    }
+
+    private record Key(String app, String uri, String ip) {
+    }
+}
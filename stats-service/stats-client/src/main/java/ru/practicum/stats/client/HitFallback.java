@@ -0,0 +1,28 @@
+package ru.practicum.stats.client;
+
+import ru.practicum.stats.dto.EndpointHitDto;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps hits that could not be delivered to the stats service until it is reachable again.
+ */
+public interface HitFallback extends AutoCloseable {
+    /**
+     * @param batchKey sent with every replay of the batch, so the server can tell a batch it already saved
+     */
+    void store(List<EndpointHitDto> hits, String batchKey);
+
+    /**
+     * Hands stored hits to {@code sender} in the batches they were stored in together with their batch key;
+     * hits stay stored if the sender throws.
+     */
+    void replay(BiConsumer<String, List<EndpointHitDto>> sender);
+
+    long size();
+
+    @Override
+    default void close() {
+    }
+}
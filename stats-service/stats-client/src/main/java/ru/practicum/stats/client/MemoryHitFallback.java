@@ -0,0 +1,87 @@
+package ru.practicum.stats.client;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.stats.dto.EndpointHitDto;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Bounded in-memory fallback, the oldest hits are dropped when it is full and everything is lost on restart.
+ */
+@Slf4j
+public class MemoryHitFallback implements HitFallback {
+    private final Deque<KeyedBatch> batches = new ArrayDeque<>();
+    private final int capacity;
+    private final AtomicLong dropped = new AtomicLong();
+    private int size;
+
+    public MemoryHitFallback(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized void store(List<EndpointHitDto> hits, String batchKey) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        batches.addLast(new KeyedBatch(batchKey, new ArrayDeque<>(hits)));
+        size += hits.size();
+        while (size > capacity) {
+            KeyedBatch oldest = batches.peekFirst();
+            oldest.hits().pollFirst();
+            if (oldest.hits().isEmpty()) {
+                batches.pollFirst();
+            }
+            size--;
+            dropped.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void replay(BiConsumer<String, List<EndpointHitDto>> sender) {
+        while (true) {
+            KeyedBatch batch;
+            synchronized (this) {
+                batch = batches.peekFirst();
+            }
+            if (batch == null) {
+                return;
+            }
+            List<EndpointHitDto> hits;
+            synchronized (this) {
+                hits = new ArrayList<>(batch.hits());
+            }
+            try {
+                sender.accept(batch.key(), hits);
+            } catch (RuntimeException e) {
+                log.debug("Replay of {} hits failed: {}", hits.size(), e.getMessage());
+                return;
+            }
+            synchronized (this) {
+                // The batch may have been trimmed or dropped by a store meanwhile
+                if (batches.peekFirst() == batch) {
+                    batches.pollFirst();
+                    size -= batch.hits().size();
+                }
+            }
+            log.debug("Replayed {} hits", hits.size());
+        }
+    }
+
+    @Override
+    public synchronized long size() {
+        return size;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private record KeyedBatch(String key, Deque<EndpointHitDto> hits) {
+    }
+}
@@ -1,36 +1,123 @@
 package ru.practicum.stats.client;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
+import ru.practicum.stats.dto.EndpointHitBatchResultDto;
 import ru.practicum.stats.dto.EndpointHitDto;
+import ru.practicum.stats.dto.StatsQueryDto;
 import ru.practicum.stats.dto.ViewStats;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
-public class StatsClient {
+public class StatsClient implements AutoCloseable {
+    public enum Mode {
+        REMOTE,
+        EMBEDDED
+    }
+
     private final RestTemplate restTemplate;
     private final String serverUrl;
+    private final EmbeddedStats embedded;
+    private final AsyncHitSender asyncSender;
+    private final HitAggregator aggregator;
+    private final ViewCountCache viewCache;
+    private final ViewLookupCoalescer coalescer;
+    private final ViewReplica replica;
+    private final CircuitBreaker breaker;
+    private final HitFallback hitFallback;
+    private final ScheduledExecutorService replayer;
+    private final int postThreshold;
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String EVENT_URI_PREFIX = "/events/";
 
+    @Autowired
     public StatsClient(RestTemplate restTemplate,
                        @Value("${stats.server.url:http://localhost:9090}")
                        String serverUrl) {
+        this(restTemplate, serverUrl, new StatsClientProperties());
+    }
+
+    public StatsClient(RestTemplate restTemplate, String serverUrl, StatsClientProperties properties) {
+        this(restTemplate, serverUrl, null, properties);
+    }
+
+    /**
+     * Embedded mode: hits and queries go straight to {@code embedded} in this JVM, no HTTP is involved.
+     */
+    public StatsClient(EmbeddedStats embedded, StatsClientProperties properties) {
+        this(null, null, embedded, properties);
+    }
+
+    private StatsClient(@Nullable RestTemplate restTemplate, @Nullable String serverUrl,
+                        @Nullable EmbeddedStats embedded, StatsClientProperties properties) {
         this.restTemplate = restTemplate;
         this.serverUrl = serverUrl;
-        log.info("Initializing StatsClient with server URL: {}", serverUrl);
+        this.embedded = embedded;
+        this.postThreshold = properties.getQuery().getPostThreshold();
+        StatsClientProperties.Breaker breakerProperties = properties.getBreaker();
+        this.breaker = breakerProperties.isEnabled() ? new CircuitBreaker("stats-service", breakerProperties) : null;
+        if (properties.getSpool().isEnabled()) {
+            this.hitFallback = new FileHitSpool(properties.getSpool(), properties.getAsync().getBatchSize());
+        } else if (breaker != null) {
+            this.hitFallback = new MemoryHitFallback(breakerProperties.getFallbackCapacity());
+        } else {
+            this.hitFallback = null;
+        }
+        if (hitFallback != null) {
+            this.replayer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "stats-hit-replay");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // Hits left over from a previous run are replayed right away
+            replayer.scheduleWithFixedDelay(this::replayFallback, 0, breakerProperties.getReplayIntervalMs(),
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.replayer = null;
+        }
+        // Without a spool, spilled hits are sent on the caller thread, so they are delayed rather than lost
+        this.asyncSender = properties.getAsync().isEnabled()
+                ? new AsyncHitSender(this::deliver,
+                properties.getSpool().isEnabled() ? hits -> hitFallback.store(hits, newBatchKey()) : this::saveHits,
+                properties.getAsync())
+                : null;
+        this.aggregator = properties.getAggregate().isEnabled()
+                ? new HitAggregator(this::sendHits, properties.getAggregate())
+                : null;
+        this.viewCache = properties.getCache().isEnabled() ? new ViewCountCache(properties.getCache()) : null;
+        this.coalescer = properties.getCoalesce().isEnabled()
+                ? new ViewLookupCoalescer(this::fetchViews, properties.getCoalesce())
+                : null;
+        // Embedded lookups are already local, there is nothing to replicate
+        this.replica = properties.getReplica().isEnabled() && embedded == null
+                ? new ViewReplica(serverUrl, properties.getReplica(), properties.getHttp())
+                : null;
+        log.info("Initializing StatsClient with server URL: {}, async hits: {}, aggregation: {}, view cache: {}, "
+                        + "coalescing: {}, circuit breaker: {}, replica: {}", embedded != null ? "embedded" : serverUrl,
+                asyncSender != null, aggregator != null, viewCache != null, coalescer != null, breaker != null,
+                replica != null);
     }
 
     public void recordHit(String appName, String uri, String ip, LocalDateTime timestamp) {
@@ -40,20 +127,105 @@ public class StatsClient {
                 .ip(ip)
                 .timestamp(timestamp.format(FORMATTER))
                 .build();
-        saveHit(hit);
+        if (viewCache != null || replica != null) {
+            Long eventId = findEventId(uri);
+            if (eventId != null && viewCache != null) {
+                viewCache.onHit(eventId);
+            }
+            if (eventId != null && replica != null) {
+                replica.onHit(eventId);
+            }
+        }
+        if (aggregator != null) {
+            aggregator.add(hit);
+        } else if (asyncSender != null) {
+            asyncSender.submit(hit);
+        } else {
+            saveHit(hit);
+        }
     }
 
     public void saveHit(EndpointHitDto hit) {
         log.debug("Sending hit to stats service: {}", hit);
         try {
-            restTemplate.postForEntity(serverUrl + "/hit", hit, Void.class);
+            deliver(List.of(hit));
             log.debug("Successfully sent hit to stats service");
         } catch (Exception e) {
             log.warn("Failed to send hit to stats service: {}", e.getMessage());
         }
     }
 
+    public void saveHits(List<EndpointHitDto> hits) {
+        try {
+            deliver(hits);
+        } catch (Exception e) {
+            log.warn("Failed to send {} hits to stats service: {}", hits.size(), e.getMessage());
+        }
+    }
+
+    @Nullable
+    public AsyncHitSender getAsyncSender() {
+        return asyncSender;
+    }
+
+    @Nullable
+    public HitAggregator getAggregator() {
+        return aggregator;
+    }
+
+    @Nullable
+    public ViewCountCache getViewCache() {
+        return viewCache;
+    }
+
+    @Nullable
+    public ViewLookupCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    @Nullable
+    public ViewReplica getReplica() {
+        return replica;
+    }
+
+    @Nullable
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    @Nullable
+    public HitFallback getHitFallback() {
+        return hitFallback;
+    }
+
+    @Override
+    public void close() {
+        if (aggregator != null) {
+            aggregator.close();
+        }
+        if (asyncSender != null) {
+            asyncSender.close();
+        }
+        if (replayer != null) {
+            replayer.shutdownNow();
+            hitFallback.close();
+        }
+        if (viewCache != null) {
+            viewCache.close();
+        }
+        if (coalescer != null) {
+            coalescer.close();
+        }
+        if (replica != null) {
+            replica.close();
+        }
+    }
+
     public Long getViews(String appName, Long eventId, LocalDateTime start, LocalDateTime end, boolean unique) {
+        if ((replica != null && replica.covers(appName, start, end))
+                || (viewCache != null && viewCache.covers(end)) || coalescer != null) {
+            return getViewsForEvents(appName, List.of(eventId), start, end, unique).getOrDefault(eventId, 0L);
+        }
         List<String> uris = List.of("/events/" + eventId);
         List<ViewStats> stats = getStats(start, end, uris, unique);
 
@@ -71,13 +243,72 @@ public class StatsClient {
         if (eventIds == null || eventIds.isEmpty()) {
             return Collections.emptyMap();
         }
+        // While the replica is not synced lookups go to the stats service as usual
+        if (replica != null && replica.covers(appName, start, end)) {
+            return replica.get(eventIds, unique);
+        }
+        if (viewCache != null && viewCache.covers(end)) {
+            return viewCache.get(eventIds, unique, start, ids -> loadViews(ids, unique, start, LocalDateTime.now()));
+        }
 
-        List<String> uris = eventIds.stream()
-                .map(id -> "/events/" + id)
-                .collect(Collectors.toList());
+        try {
+            return loadViews(eventIds, unique, start, end);
+        } catch (Exception e) {
+            log.warn("Failed to get views from stats service: {}", e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
 
-        List<ViewStats> stats = getStats(start, end, uris, unique);
+    /**
+     * Reads view counts from the stats service itself, past the replica, the cache and the coalescer, whose counts
+     * can run ahead of it when hits bump them. Events without views are missing from the result; throws if the
+     * stats service is unavailable rather than reporting no views.
+     */
+    public Map<Long, Long> fetchViewsForEvents(List<Long> eventIds, LocalDateTime start, LocalDateTime end,
+                                               boolean unique) {
+        if (eventIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return fetchViews(eventIds, unique, start, end);
+    }
 
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end,
+                                    @Nullable List<String> uris, boolean unique) {
+        try {
+            return fetchStats(start, end, uris, unique);
+        } catch (Exception e) {
+            log.warn("Failed to get stats from stats service: {}", e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private Map<Long, Long> loadViews(List<Long> eventIds, boolean unique, LocalDateTime start, LocalDateTime end) {
+        if (coalescer != null) {
+            return coalescer.get(eventIds, unique, start, end);
+        }
+        return fetchViews(eventIds, unique, start, end);
+    }
+
+    private Map<Long, Long> fetchViews(List<Long> eventIds, boolean unique, LocalDateTime start, LocalDateTime end) {
+        if (eventIds.size() > postThreshold) {
+            return toViews(fetchQuery(StatsQueryDto.builder()
+                    .start(start.format(FORMATTER))
+                    .end(end.format(FORMATTER))
+                    .unique(String.valueOf(unique))
+                    .uriPrefix(EVENT_URI_PREFIX)
+                    .ids(eventIds)
+                    .build()));
+        }
+        return toViews(fetchStats(start, end, toEventUris(eventIds), unique));
+    }
+
+    private List<String> toEventUris(List<Long> eventIds) {
+        return eventIds.stream()
+                .map(id -> EVENT_URI_PREFIX + id)
+                .collect(Collectors.toList());
+    }
+
+    private Map<Long, Long> toViews(List<ViewStats> stats) {
         return stats.stream()
                 .collect(Collectors.toMap(
                         s -> parseEventIdFromUri(s.getUri()),
@@ -85,8 +316,62 @@ public class StatsClient {
                         (existing, replacement) -> existing));
     }
 
-    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end,
-                                    @Nullable List<String> uris, boolean unique) {
+    /**
+     * Runs a {@code POST /stats/query}, which takes any number of URIs or event ids without the URL length limits
+     * of {@link #getStats}; returns an empty list if the stats service is unavailable.
+     */
+    public List<ViewStats> queryStats(StatsQueryDto query) {
+        try {
+            return fetchQuery(query);
+        } catch (Exception e) {
+            log.warn("Failed to query stats from stats service: {}", e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private List<ViewStats> fetchQuery(StatsQueryDto query) {
+        if (breaker != null) {
+            return breaker.execute(() -> postQuery(query));
+        }
+        return postQuery(query);
+    }
+
+    private List<ViewStats> postQuery(StatsQueryDto query) {
+        log.debug("Querying stats from {} to {}, uris: {}, ids: {}, unique: {}", query.getStart(), query.getEnd(),
+                query.getUris() != null ? query.getUris().size() : 0,
+                query.getIds() != null ? query.getIds().size() : 0, query.getUnique());
+        if (embedded != null) {
+            return embedded.getStats(LocalDateTime.parse(query.getStart(), FORMATTER),
+                    LocalDateTime.parse(query.getEnd(), FORMATTER), queryUris(query),
+                    !"false".equalsIgnoreCase(query.getUnique()));
+        }
+        ViewStats[] response = restTemplate.postForObject(serverUrl + "/stats/query", query, ViewStats[].class);
+        List<ViewStats> stats = response != null ? Arrays.asList(response) : List.of();
+        log.debug("Successfully retrieved {} stats records", stats.size());
+        return stats;
+    }
+
+    private List<ViewStats> fetchStats(LocalDateTime start, LocalDateTime end,
+                                       @Nullable List<String> uris, boolean unique) {
+        if (breaker != null) {
+            return breaker.execute(() -> requestStats(start, end, uris, unique));
+        }
+        return requestStats(start, end, uris, unique);
+    }
+
+    private List<ViewStats> requestStats(LocalDateTime start, LocalDateTime end,
+                                         @Nullable List<String> uris, boolean unique) {
+        if (embedded != null) {
+            return embedded.getStats(start, end, uris, unique);
+        }
+        if (uris != null && uris.size() > postThreshold) {
+            return postQuery(StatsQueryDto.builder()
+                    .start(start.format(FORMATTER))
+                    .end(end.format(FORMATTER))
+                    .unique(String.valueOf(unique))
+                    .uris(uris)
+                    .build());
+        }
         log.debug("Requesting stats from {} to {}, uris: {}, unique: {}",
                 start, end, uris, unique);
 
@@ -101,17 +386,113 @@ public class StatsClient {
             }
         }
 
+        ResponseEntity<ViewStats[]> response = restTemplate.getForEntity(
+                builder.toUriString(),
+                ViewStats[].class);
+        List<ViewStats> stats = Arrays.asList(response.getBody());
+
+        log.debug("Successfully retrieved {} stats records", stats.size());
+        return stats;
+    }
+
+    /**
+     * Sends hits through the circuit breaker if there is one; while it is open or when the call fails the hits
+     * go to the fallback and are replayed later. Requests rejected by the server are not retried.
+     * The first attempt goes without a batch key, the key is assigned once the batch is stored, so every replay
+     * of it is saved at most once.
+     */
+    private void deliver(List<EndpointHitDto> hits) {
+        Runnable post = () -> postHits(hits, null);
+        if (hitFallback == null) {
+            post.run();
+            return;
+        }
         try {
-            ResponseEntity<ViewStats[]> response = restTemplate.getForEntity(
-                    builder.toUriString(),
-                    ViewStats[].class);
-            List<ViewStats> stats = Arrays.asList(response.getBody());
+            if (breaker != null) {
+                breaker.execute(post);
+            } else {
+                post.run();
+            }
+        } catch (HttpClientErrorException | IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            hitFallback.store(hits, newBatchKey());
+            log.debug("Stored {} hits in the fallback: {}", hits.size(), e.getMessage());
+        }
+    }
 
-            log.debug("Successfully retrieved {} stats records", stats.size());
-            return stats;
-        } catch (Exception e) {
-            log.warn("Failed to get stats from stats service: {}", e.getMessage());
-            return Collections.emptyList();
+    private void sendHits(List<EndpointHitDto> hits) {
+        if (asyncSender != null) {
+            hits.forEach(asyncSender::submit);
+        } else {
+            saveHits(hits);
+        }
+    }
+
+    private void replayFallback() {
+        if ((breaker != null && !breaker.isCallPermitted()) || hitFallback.size() == 0) {
+            return;
+        }
+        try {
+            log.info("Replaying {} hits stored while the stats service was unavailable", hitFallback.size());
+            hitFallback.replay((batchKey, batch) -> {
+                if (breaker != null) {
+                    breaker.execute(() -> postHits(batch, batchKey));
+                } else {
+                    postHits(batch, batchKey);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to replay stored hits: {}", e.getMessage());
+        }
+    }
+
+    private void postHits(List<EndpointHitDto> hits, @Nullable String batchKey) {
+        log.debug("Sending batch of {} hits to stats service, key={}", hits.size(), batchKey);
+        HttpHeaders headers = new HttpHeaders();
+        if (batchKey != null) {
+            headers.set("Idempotency-Key", batchKey);
+        }
+        EndpointHitBatchResultDto result = embedded != null
+                ? embedded.saveHits(hits, batchKey)
+                : restTemplate.postForObject(serverUrl + "/hits", new HttpEntity<>(hits, headers),
+                EndpointHitBatchResultDto.class);
+        if (result != null && result.getErrors() != null && !result.getErrors().isEmpty()) {
+            log.warn("Stats service rejected {} of {} hits, first error: {}",
+                    result.getErrors().size(), hits.size(), result.getErrors().get(0).getError());
+        }
+    }
+
+    /**
+     * URIs of a query the way stats-server reads them: the listed URIs followed by the prefixed ids.
+     * Approximate unique counts are a stats-server feature, embedded queries count unique hits exactly.
+     */
+    @Nullable
+    private List<String> queryUris(StatsQueryDto query) {
+        if (query.getUris() == null && (query.getIds() == null || query.getIds().isEmpty())) {
+            return null;
+        }
+        List<String> uris = new ArrayList<>();
+        if (query.getUris() != null) {
+            uris.addAll(query.getUris());
+        }
+        if (query.getIds() != null) {
+            for (Long id : query.getIds()) {
+                uris.add(query.getUriPrefix() + id);
+            }
+        }
+        return uris;
+    }
+
+    @Nullable
+    private Long findEventId(String uri) {
+        if (uri == null || !uri.startsWith("/events/")) {
+            return null;
+        }
+        try {
+            return Long.valueOf(uri.substring("/events/".length()));
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
 
@@ -123,4 +504,8 @@ public class StatsClient {
             throw new IllegalArgumentException("Invalid event URI format: " + uri);
         }
     }
+
+    private static String newBatchKey() {
+        return UUID.randomUUID().toString();
+    }
 }
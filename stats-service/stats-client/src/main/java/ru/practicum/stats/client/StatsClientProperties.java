@@ -0,0 +1,107 @@
+package ru.practicum.stats.client;
+
+import lombok.Data;
+
+import java.net.http.HttpClient;
+
+@Data
+public class StatsClientProperties {
+    private StatsClient.Mode mode = StatsClient.Mode.REMOTE;
+    private Async async = new Async();
+    private Http http = new Http();
+    private Cache cache = new Cache();
+    private Coalesce coalesce = new Coalesce();
+    private Breaker breaker = new Breaker();
+    private Spool spool = new Spool();
+    private Aggregate aggregate = new Aggregate();
+    private Query query = new Query();
+    private Replica replica = new Replica();
+
+    @Data
+    public static class Async {
+        private boolean enabled = false;
+        private int capacity = 10000;
+        private int batchSize = 500;
+        private long flushIntervalMs = 200;
+        private AsyncHitSender.OverflowPolicy overflow = AsyncHitSender.OverflowPolicy.DROP_OLDEST;
+        private long blockTimeoutMs = 50;
+        private long shutdownTimeoutMs = 5000;
+    }
+
+    @Data
+    public static class Http {
+        // The JDK client measured slower than the simple one, see StatsClientLoadHarness
+        private StatsHttpTransport.Type transport = StatsHttpTransport.Type.SIMPLE;
+        private HttpClient.Version version = HttpClient.Version.HTTP_1_1;
+        private long connectTimeoutMs = 1000;
+        private long readTimeoutMs = 3000;
+        private int maxConcurrentRequests = 64;
+        private long acquireTimeoutMs = 500;
+    }
+
+    @Data
+    public static class Cache {
+        private boolean enabled = false;
+        private long ttlMs = 5000;
+        private long staleMs = 60000;
+        private int maxEntries = 100000;
+        private boolean bumpOnHit = false;
+        private int refreshThreads = 2;
+    }
+
+    @Data
+    public static class Coalesce {
+        private boolean enabled = false;
+        private long windowMs = 2;
+        private int maxBatchSize = 100;
+        private long timeoutMs = 5000;
+        private long liveToleranceMs = 1000;
+        private int threads = 4;
+    }
+
+    @Data
+    public static class Breaker {
+        private boolean enabled = false;
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private int failureRateThreshold = 50;
+        private long openDurationMs = 10000;
+        private int halfOpenCalls = 3;
+        private int fallbackCapacity = 10000;
+        private long replayIntervalMs = 5000;
+    }
+
+    @Data
+    public static class Aggregate {
+        private boolean enabled = false;
+        private long windowMs = 2000;
+        private int maxKeys = 10000;
+    }
+
+    @Data
+    public static class Query {
+        // Lookups with more URIs than this go through POST /stats/query instead of a long GET URL
+        private int postThreshold = 20;
+    }
+
+    @Data
+    public static class Spool {
+        private boolean enabled = false;
+        private String dir = "data/stats-spool";
+        private long segmentBytes = 8 * 1024 * 1024;
+        private boolean fsync = true;
+    }
+
+    @Data
+    public static class Replica {
+        private boolean enabled = false;
+        // Lookups for exactly this app and range start are answered from the replica
+        private String app = "ewm-main-service";
+        private String start = "2020-01-01 00:00:00";
+        private long liveToleranceMs = 5000;
+        private boolean bumpOnHit = false;
+        private long idleTimeoutMs = 45000;
+        private long reconnectDelayMs = 1000;
+        private long maxReconnectDelayMs = 30000;
+    }
+}
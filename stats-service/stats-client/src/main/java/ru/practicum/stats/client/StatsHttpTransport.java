@@ -0,0 +1,193 @@
+package ru.practicum.stats.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP transport of {@link StatsClient}: a {@link RestTemplate} with connect/read deadlines and a bounded number
+ * of requests in flight, so a slow stats server cannot pin an unbounded number of caller threads.
+ */
+@Slf4j
+public class StatsHttpTransport implements AutoCloseable {
+    public enum Type {
+        JDK,
+        SIMPLE
+    }
+
+    private final HttpClient httpClient;
+    private final HttpClient bodyHttpClient;
+    private final RestTemplate restTemplate;
+    private final Semaphore permits;
+    private final int maxConcurrentRequests;
+    private final long acquireTimeoutMs;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public StatsHttpTransport(StatsClientProperties.Http properties) {
+        this.maxConcurrentRequests = properties.getMaxConcurrentRequests();
+        this.acquireTimeoutMs = properties.getAcquireTimeoutMs();
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+
+        Duration connectTimeout = Duration.ofMillis(properties.getConnectTimeoutMs());
+        Duration readTimeout = Duration.ofMillis(properties.getReadTimeoutMs());
+        ClientHttpRequestFactory requestFactory;
+        if (properties.getTransport() == Type.JDK) {
+            // HTTP/2 multiplexes concurrent calls over one connection, HTTP/1.1 falls back to the keep-alive pool
+            this.httpClient = HttpClient.newBuilder()
+                    .version(properties.getVersion())
+                    .connectTimeout(connectTimeout)
+                    .build();
+            JdkClientHttpRequestFactory jdkFactory = new JdkClientHttpRequestFactory(httpClient);
+            jdkFactory.setReadTimeout(readTimeout);
+            if (properties.getVersion() == HttpClient.Version.HTTP_2) {
+                // Cleartext HTTP/2 starts with an upgrade of the first request on a connection, and Tomcat does not
+                // reliably pass on the body of an upgrade request, so hit batches and bulk queries use HTTP/1.1
+                this.bodyHttpClient = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(connectTimeout)
+                        .build();
+                JdkClientHttpRequestFactory bodyFactory = new JdkClientHttpRequestFactory(bodyHttpClient);
+                bodyFactory.setReadTimeout(readTimeout);
+                requestFactory = (uri, method) -> method == HttpMethod.GET
+                        ? jdkFactory.createRequest(uri, method)
+                        : bodyFactory.createRequest(uri, method);
+            } else {
+                this.bodyHttpClient = null;
+                requestFactory = jdkFactory;
+            }
+        } else {
+            this.httpClient = null;
+            this.bodyHttpClient = null;
+            SimpleClientHttpRequestFactory simpleFactory = new SimpleClientHttpRequestFactory();
+            simpleFactory.setConnectTimeout(connectTimeout);
+            simpleFactory.setReadTimeout(readTimeout);
+            requestFactory = simpleFactory;
+        }
+
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.restTemplate.setInterceptors(List.of(new BoundedConcurrencyInterceptor()));
+        log.info("Stats HTTP transport: type={}, version={}, connectTimeout={}, readTimeout={}, maxConcurrent={}",
+                properties.getTransport(), properties.getVersion(), connectTimeout, readTimeout,
+                maxConcurrentRequests);
+    }
+
+    public RestTemplate getRestTemplate() {
+        return restTemplate;
+    }
+
+    public int getInFlight() {
+        return maxConcurrentRequests - permits.availablePermits();
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public double getUtilization() {
+        return (double) getInFlight() / maxConcurrentRequests;
+    }
+
+    public int getQueued() {
+        return permits.getQueueLength();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public void close() {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        if (bodyHttpClient != null) {
+            bodyHttpClient.close();
+        }
+    }
+
+    private class BoundedConcurrencyInterceptor implements ClientHttpRequestInterceptor {
+        @Override
+        public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+                throws IOException {
+            try {
+                if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    rejected.incrementAndGet();
+                    throw new ResourceAccessException("Stats client has " + maxConcurrentRequests
+                            + " requests in flight, gave up after " + acquireTimeoutMs + " ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ResourceAccessException("Interrupted while waiting for a stats client permit");
+            }
+            try {
+                return new PermitReleasingResponse(execution.execute(request, body));
+            } catch (IOException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Holds the permit until the body is consumed, RestTemplate closes the response once it is extracted.
+     */
+    private class PermitReleasingResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PermitReleasingResponse(ClientHttpResponse delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package ru.practicum.stats.client;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * View counts per event and range start, valid up to "now". A fresh entry is returned as is, a stale one is returned immediately
+ * while a background refresh reloads it, and only missing or expired entries are loaded on the caller thread.
+ * An expired value is still returned when loading fails, so an outage degrades to last-known counts.
+ */
+@Slf4j
+public class ViewCountCache implements AutoCloseable {
+    private final long ttlNanos;
+    private final long staleNanos;
+    private final int maxEntries;
+    private final boolean bumpOnHit;
+    private final ExecutorService refresher;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<LocalDateTime> starts = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong fresh = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+
+    public ViewCountCache(StatsClientProperties.Cache properties) {
+        this.ttlNanos = properties.getTtlMs() * 1_000_000L;
+        this.staleNanos = properties.getStaleMs() * 1_000_000L;
+        this.maxEntries = properties.getMaxEntries();
+        this.bumpOnHit = properties.isBumpOnHit();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.refresher = Executors.newFixedThreadPool(properties.getRefreshThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "stats-view-refresh-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("View count cache: ttl={} ms, stale={} ms, maxEntries={}, bumpOnHit={}",
+                properties.getTtlMs(), properties.getStaleMs(), maxEntries, bumpOnHit);
+    }
+
+    public boolean covers(LocalDateTime end) {
+        // Entries describe the range up to the moment they were loaded
+        return !end.isBefore(LocalDateTime.now().minusNanos(ttlNanos));
+    }
+
+    /**
+     * @param loader loads counts for the given event ids up to now, events without views may be absent;
+     *               it is expected to throw when the stats service is unavailable
+     */
+    public Map<Long, Long> get(Collection<Long> eventIds, boolean unique, LocalDateTime start,
+                               Function<List<Long>, Map<Long, Long>> loader) {
+        long now = System.nanoTime();
+        Map<Long, Long> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        Map<Long, Long> lastKnown = new HashMap<>();
+        List<Long> toRefresh = new ArrayList<>();
+
+        for (Long eventId : eventIds) {
+            Entry entry = entries.get(new Key(eventId, unique, start));
+            long age = entry == null ? Long.MAX_VALUE : now - entry.loadedAt;
+            if (age < ttlNanos) {
+                fresh.incrementAndGet();
+                result.put(eventId, entry.views.get());
+            } else if (age < ttlNanos + staleNanos) {
+                stale.incrementAndGet();
+                result.put(eventId, entry.views.get());
+                if (entry.refreshing.compareAndSet(false, true)) {
+                    toRefresh.add(eventId);
+                }
+            } else {
+                misses.incrementAndGet();
+                missing.add(eventId);
+                if (entry != null) {
+                    lastKnown.put(eventId, entry.views.get());
+                }
+            }
+        }
+
+        if (!toRefresh.isEmpty()) {
+            refreshAsync(toRefresh, unique, start, loader);
+        }
+        if (!missing.isEmpty()) {
+            try {
+                result.putAll(load(missing, unique, start, loader));
+            } catch (RuntimeException e) {
+                log.warn("Failed to load views for {} events: {}", missing.size(), e.getMessage());
+                missing.forEach(eventId -> result.put(eventId, lastKnown.getOrDefault(eventId, 0L)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts a hit recorded by this instance, so cached values do not lag behind until the next refresh.
+     * Only total counts are bumped, whether the hit is a new unique view is not known here.
+     */
+    public void onHit(long eventId) {
+        if (!bumpOnHit) {
+            return;
+        }
+        // Callers use only a handful of range starts, so probing every start is cheaper than scanning entries
+        for (LocalDateTime start : starts) {
+            bump(new Key(eventId, false, start));
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getFresh() {
+        return fresh.get();
+    }
+
+    public long getStale() {
+        return stale.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getRefreshFailures() {
+        return refreshFailures.get();
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    private void refreshAsync(List<Long> eventIds, boolean unique, LocalDateTime start,
+                              Function<List<Long>, Map<Long, Long>> loader) {
+        try {
+            refresher.execute(() -> {
+                try {
+                    load(eventIds, unique, start, loader);
+                } catch (RuntimeException e) {
+                    refreshFailures.incrementAndGet();
+                    log.debug("Failed to refresh views for {} events: {}", eventIds.size(), e.getMessage());
+                    releaseRefresh(eventIds, unique, start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            releaseRefresh(eventIds, unique, start);
+        }
+    }
+
+    private Map<Long, Long> load(List<Long> eventIds, boolean unique, LocalDateTime start,
+                                 Function<List<Long>, Map<Long, Long>> loader) {
+        long loadedAt = System.nanoTime();
+        Map<Long, Long> loaded = loader.apply(eventIds);
+        starts.add(start);
+        Map<Long, Long> result = new HashMap<>();
+        for (Long eventId : eventIds) {
+            long views = loaded.getOrDefault(eventId, 0L);
+            entries.put(new Key(eventId, unique, start), new Entry(views, loadedAt));
+            result.put(eventId, views);
+        }
+        if (entries.size() > maxEntries) {
+            evict();
+        }
+        return result;
+    }
+
+    private void bump(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.views.incrementAndGet();
+        }
+    }
+
+    private void releaseRefresh(List<Long> eventIds, boolean unique, LocalDateTime start) {
+        for (Long eventId : eventIds) {
+            Entry entry = entries.get(new Key(eventId, unique, start));
+            if (entry != null) {
+                entry.refreshing.set(false);
+            }
+        }
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> now - entry.loadedAt >= ttlNanos + staleNanos);
+        if (entries.size() > maxEntries) {
+            log.debug("View count cache is over {} entries, clearing it", maxEntries);
+            entries.clear();
+            starts.clear();
+        }
+    }
+
+    private record Key(long eventId, boolean unique, LocalDateTime start) {
+    }
+
+    private static final class Entry {
+        private final AtomicLong views;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(long views, long loadedAt) {
+            this.views = new AtomicLong(views);
+            this.loadedAt = loadedAt;
+        }
+    }
+}
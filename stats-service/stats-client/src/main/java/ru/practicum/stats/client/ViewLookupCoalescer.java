@@ -0,0 +1,177 @@
+package ru.practicum.stats.client;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges concurrent view lookups: a lookup for an event that is already being loaded joins the in-flight call,
+ * and lookups arriving within a short window are sent as one multi-URI request.
+ */
+@Slf4j
+public class ViewLookupCoalescer implements AutoCloseable {
+    @FunctionalInterface
+    public interface BatchLoader {
+        Map<Long, Long> load(List<Long> eventIds, boolean unique, LocalDateTime start, LocalDateTime end);
+    }
+
+    private final BatchLoader loader;
+    private final long windowMs;
+    private final int maxBatchSize;
+    private final long timeoutMs;
+    private final long liveToleranceMs;
+    private final ScheduledExecutorService executor;
+
+    private final Map<Key, CompletableFuture<Long>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Group, Batch> pending = new HashMap<>();
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public ViewLookupCoalescer(BatchLoader loader, StatsClientProperties.Coalesce properties) {
+        this.loader = loader;
+        this.windowMs = properties.getWindowMs();
+        this.maxBatchSize = properties.getMaxBatchSize();
+        this.timeoutMs = properties.getTimeoutMs();
+        this.liveToleranceMs = properties.getLiveToleranceMs();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newScheduledThreadPool(properties.getThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "stats-view-lookup-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("View lookup coalescing: window={} ms, maxBatchSize={}", windowMs, maxBatchSize);
+    }
+
+    /**
+     * Lookups whose end is within the live tolerance of now share calls that load the range up to the moment
+     * the batch is sent, other lookups are only merged with lookups for exactly the same range.
+     */
+    public Map<Long, Long> get(List<Long> eventIds, boolean unique, LocalDateTime start, LocalDateTime end) {
+        boolean live = !end.isBefore(LocalDateTime.now().minusNanos(liveToleranceMs * 1_000_000L));
+        Group group = new Group(unique, start, live ? null : end);
+
+        Map<Long, CompletableFuture<Long>> futures = new LinkedHashMap<>();
+        for (Long eventId : eventIds) {
+            if (futures.containsKey(eventId)) {
+                continue;
+            }
+            requested.incrementAndGet();
+            Key key = new Key(eventId, group);
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            CompletableFuture<Long> existing = inFlight.putIfAbsent(key, future);
+            if (existing != null) {
+                coalesced.incrementAndGet();
+                futures.put(eventId, existing);
+            } else {
+                enqueue(group, eventId, future);
+                futures.put(eventId, future);
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                    .get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for views", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to load views: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out after " + timeoutMs + " ms waiting for views", e);
+        }
+
+        Map<Long, Long> result = new HashMap<>();
+        futures.forEach((eventId, future) -> result.put(eventId, future.join()));
+        return result;
+    }
+
+    public long getRequested() {
+        return requested.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void enqueue(Group group, Long eventId, CompletableFuture<Long> future) {
+        Batch full = null;
+        synchronized (pending) {
+            Batch batch = pending.get(group);
+            if (batch == null) {
+                batch = new Batch();
+                pending.put(group, batch);
+                Batch scheduled = batch;
+                executor.schedule(() -> flush(group, scheduled), windowMs, TimeUnit.MILLISECONDS);
+            }
+            batch.futures.put(eventId, future);
+            if (batch.futures.size() >= maxBatchSize) {
+                pending.remove(group);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            Batch ready = full;
+            executor.execute(() -> send(group, ready));
+        }
+    }
+
+    private void flush(Group group, Batch batch) {
+        synchronized (pending) {
+            // Already sent because it filled up before the window closed
+            if (pending.get(group) != batch) {
+                return;
+            }
+            pending.remove(group);
+        }
+        send(group, batch);
+    }
+
+    private void send(Group group, Batch batch) {
+        batches.incrementAndGet();
+        List<Long> eventIds = new ArrayList<>(batch.futures.keySet());
+        LocalDateTime end = group.end() != null ? group.end() : LocalDateTime.now();
+        try {
+            Map<Long, Long> views = loader.load(eventIds, group.unique(), group.start(), end);
+            batch.futures.forEach((eventId, future) -> future.complete(views.getOrDefault(eventId, 0L)));
+        } catch (RuntimeException e) {
+            batch.futures.values().forEach(future -> future.completeExceptionally(e));
+        } finally {
+            batch.futures.forEach((eventId, future) -> inFlight.remove(new Key(eventId, group), future));
+        }
+    }
+
+    private record Group(boolean unique, LocalDateTime start, LocalDateTime end) {
+    }
+
+    private record Key(long eventId, Group group) {
+    }
+
+    private static final class Batch {
+        private final Map<Long, CompletableFuture<Long>> futures = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,282 @@
+package ru.practicum.stats.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.stats.dto.ViewStatsUpdateDto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local copy of event view counts kept up to date from {@code GET /stats/subscribe}. Each connection starts with
+ * a snapshot that replaces the whole copy, so updates missed while disconnected are never an issue; lookups are
+ * only answered while connected and synced.
+ */
+@Slf4j
+public class ViewReplica implements AutoCloseable {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String EVENT_URI_PREFIX = "/events/";
+    private static final TypeReference<List<ViewStatsUpdateDto>> UPDATES = new TypeReference<>() {
+    };
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final URI subscribeUri;
+    private final String app;
+    private final LocalDateTime start;
+    private final long liveToleranceNanos;
+    private final long idleTimeoutNanos;
+    private final long reconnectDelayMs;
+    private final long maxReconnectDelayMs;
+    private final boolean bumpOnHit;
+    private final Thread reader;
+    private final ScheduledExecutorService watchdog;
+
+    private volatile Map<Long, Counts> views = new ConcurrentHashMap<>();
+    private volatile boolean synced;
+    private volatile boolean running = true;
+    private volatile long lastReceived;
+    private volatile InputStream stream;
+
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+
+    public ViewReplica(String serverUrl, StatsClientProperties.Replica properties, StatsClientProperties.Http http) {
+        this.app = properties.getApp();
+        this.start = LocalDateTime.parse(properties.getStart(), FORMATTER);
+        this.liveToleranceNanos = properties.getLiveToleranceMs() * 1_000_000L;
+        this.idleTimeoutNanos = properties.getIdleTimeoutMs() * 1_000_000L;
+        this.reconnectDelayMs = properties.getReconnectDelayMs();
+        this.maxReconnectDelayMs = properties.getMaxReconnectDelayMs();
+        this.bumpOnHit = properties.isBumpOnHit();
+        this.subscribeUri = URI.create(serverUrl + "/stats/subscribe?start="
+                + URLEncoder.encode(properties.getStart(), StandardCharsets.UTF_8)
+                + "&uriPrefix=" + URLEncoder.encode(EVENT_URI_PREFIX, StandardCharsets.UTF_8));
+        // A long-lived stream of its own, it must not share a connection with regular requests
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(http.getConnectTimeoutMs()))
+                .build();
+
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-view-replica-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkIntervalMs = Math.max(1, properties.getIdleTimeoutMs() / 3);
+        watchdog.scheduleWithFixedDelay(this::closeIfIdle, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+
+        this.reader = new Thread(this::run, "stats-view-replica");
+        reader.setDaemon(true);
+        reader.start();
+        log.info("View replica: app={}, start={}, idleTimeout={} ms", app, start, properties.getIdleTimeoutMs());
+    }
+
+    /**
+     * Whether a lookup for {@code app} over {@code [start, end]} can be answered from the replica, which holds
+     * counts from its own start up to now.
+     */
+    public boolean covers(String app, LocalDateTime start, LocalDateTime end) {
+        return synced
+                && this.app.equals(app)
+                && this.start.equals(start)
+                && !end.isBefore(LocalDateTime.now().minusNanos(liveToleranceNanos));
+    }
+
+    public Map<Long, Long> get(Collection<Long> eventIds, boolean unique) {
+        Map<Long, Counts> current = views;
+        Map<Long, Long> result = new HashMap<>();
+        for (Long eventId : eventIds) {
+            Counts counts = current.get(eventId);
+            result.put(eventId, counts == null ? 0L : unique ? counts.uniqueHits() : counts.hits());
+        }
+        return result;
+    }
+
+    /**
+     * Counts a hit recorded by this instance until the server pushes the new totals. Like
+     * {@link ViewCountCache#onHit}, only the total count is bumped.
+     */
+    public void onHit(long eventId) {
+        if (bumpOnHit && synced) {
+            views.merge(eventId, new Counts(1, 0),
+                    (counts, hit) -> new Counts(counts.hits() + hit.hits(), counts.uniqueHits()));
+        }
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    public int size() {
+        return views.size();
+    }
+
+    public long getConnects() {
+        return connects.get();
+    }
+
+    public long getUpdates() {
+        return updates.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        synced = false;
+        watchdog.shutdownNow();
+        closeStream();
+        reader.interrupt();
+        httpClient.close();
+    }
+
+    private void run() {
+        long delayMs = reconnectDelayMs;
+        while (running) {
+            try {
+                subscribe();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (running) {
+                    log.warn("View replica lost its subscription: {}", e.getMessage());
+                }
+            }
+            if (synced) {
+                // The connection worked, so reconnecting starts over from the shortest delay
+                delayMs = reconnectDelayMs;
+            }
+            synced = false;
+            if (!running) {
+                return;
+            }
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            delayMs = Math.min(delayMs * 2, maxReconnectDelayMs);
+        }
+    }
+
+    private void subscribe() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(subscribeUri)
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Subscription rejected with status " + response.statusCode());
+        }
+        connects.incrementAndGet();
+        stream = response.body();
+        lastReceived = System.nanoTime();
+
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String event = null;
+            StringBuilder data = new StringBuilder();
+            String line;
+            while (running && (line = lines.readLine()) != null) {
+                lastReceived = System.nanoTime();
+                if (line.isEmpty()) {
+                    if (data.length() > 0) {
+                        dispatch(event, data.toString());
+                    }
+                    event = null;
+                    data.setLength(0);
+                } else if (line.startsWith("event:")) {
+                    event = line.substring("event:".length()).trim();
+                } else if (line.startsWith("data:")) {
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(line.substring("data:".length()));
+                }
+            }
+        } finally {
+            stream = null;
+        }
+        log.info("View replica subscription ended");
+    }
+
+    private void dispatch(String event, String data) throws IOException {
+        List<ViewStatsUpdateDto> received = objectMapper.readValue(data, UPDATES);
+        if ("snapshot".equals(event)) {
+            Map<Long, Counts> snapshot = new ConcurrentHashMap<>();
+            apply(snapshot, received);
+            views = snapshot;
+            synced = true;
+            log.info("View replica synced: {} events", snapshot.size());
+        } else if ("update".equals(event)) {
+            apply(views, received);
+            updates.addAndGet(received.size());
+        }
+    }
+
+    private void apply(Map<Long, Counts> target, List<ViewStatsUpdateDto> received) {
+        for (ViewStatsUpdateDto update : received) {
+            Long eventId = eventId(update);
+            if (eventId == null) {
+                continue;
+            }
+            target.put(eventId, new Counts(update.getHits(), update.getUniqueHits()));
+        }
+    }
+
+    private Long eventId(ViewStatsUpdateDto update) {
+        if (!app.equals(update.getApp()) || update.getUri() == null || !update.getUri().startsWith(EVENT_URI_PREFIX)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(update.getUri().substring(EVENT_URI_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void closeIfIdle() {
+        if (stream != null && System.nanoTime() - lastReceived > idleTimeoutNanos) {
+            log.warn("View replica received nothing for {} ms, reconnecting", idleTimeoutNanos / 1_000_000L);
+            synced = false;
+            closeStream();
+        }
+    }
+
+    private void closeStream() {
+        InputStream current = stream;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                log.debug("Failed to close view replica stream: {}", e.getMessage());
+            }
+        }
+    }
+
+    private record Counts(long hits, long uniqueHits) {
+    }
+}
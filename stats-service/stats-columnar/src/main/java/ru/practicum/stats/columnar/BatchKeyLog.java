@@ -0,0 +1,146 @@
+package ru.practicum.stats.columnar;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keys of the most recently saved batches, appended to a file so that a batch replayed after a restart is still
+ * recognized. Only the newest {@code capacity} keys are kept, the file is rewritten once it holds twice as many.
+ * Not thread safe, callers hold the store lock.
+ */
+@Slf4j
+class BatchKeyLog implements AutoCloseable {
+    private final Path path;
+    private final int capacity;
+    private final Set<String> keys;
+    private DataOutputStream out;
+    private int written;
+
+    BatchKeyLog(Path path, int capacity) {
+        this.path = path;
+        this.capacity = capacity;
+        this.keys = Collections.newSetFromMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return super.size() > capacity;
+            }
+        });
+        load();
+        if (written > capacity) {
+            compact();
+        } else {
+            open();
+        }
+    }
+
+    boolean contains(String key) {
+        return keys.contains(key);
+    }
+
+    void add(String key) {
+        if (!keys.add(key)) {
+            return;
+        }
+        try {
+            out.writeUTF(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to batch key log " + path, e);
+        }
+        if (++written >= 2 * capacity) {
+            compact();
+        }
+    }
+
+    void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to flush batch key log " + path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close batch key log " + path, e);
+        }
+    }
+
+    private void open() {
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open batch key log " + path, e);
+        }
+    }
+
+    private void compact() {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (out != null) {
+                out.close();
+            }
+            try (DataOutputStream tmpOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                for (String key : keys) {
+                    tmpOut.writeUTF(key);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact batch key log " + path, e);
+        }
+        written = keys.size();
+        open();
+        log.debug("Compacted {} to {} keys", path, written);
+    }
+
+    private void load() {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            ByteArrayInputStream bytesIn = new ByteArrayInputStream(bytes);
+            DataInputStream in = new DataInputStream(bytesIn);
+            int valid = 0;
+            try {
+                while (bytesIn.available() > 0) {
+                    keys.add(in.readUTF());
+                    written++;
+                    valid = bytes.length - bytesIn.available();
+                }
+            } catch (EOFException e) {
+                // A crash in the middle of an append leaves a partial record behind
+                log.warn("Truncating partial record at offset {} of {}", valid, path);
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+            log.debug("Loaded {} batch keys from {}", keys.size(), path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load batch key log " + path, e);
+        }
+    }
+}
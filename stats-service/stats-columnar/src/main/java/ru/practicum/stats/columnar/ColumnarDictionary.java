@@ -0,0 +1,116 @@
+package ru.practicum.stats.columnar;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only string dictionary; the id of a value is its position in the file.
+ * Not thread safe, callers hold the store lock.
+ */
+@Slf4j
+class ColumnarDictionary implements AutoCloseable {
+    private final Path path;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private final DataOutputStream out;
+
+    ColumnarDictionary(Path path) {
+        this.path = path;
+        load();
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open dictionary " + path, e);
+        }
+    }
+
+    int getOrCreate(String value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        try {
+            out.writeUTF(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to dictionary " + path, e);
+        }
+        int created = values.size();
+        values.add(value);
+        ids.put(value, created);
+        return created;
+    }
+
+    int find(String value) {
+        return ids.getOrDefault(value, -1);
+    }
+
+    String get(int id) {
+        return values.get(id);
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to flush dictionary " + path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close dictionary " + path, e);
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            ByteArrayInputStream bytesIn = new ByteArrayInputStream(bytes);
+            DataInputStream in = new DataInputStream(bytesIn);
+            int valid = 0;
+            try {
+                while (bytesIn.available() > 0) {
+                    String value = in.readUTF();
+                    ids.put(value, values.size());
+                    values.add(value);
+                    valid = bytes.length - bytesIn.available();
+                }
+            } catch (EOFException e) {
+                // A crash in the middle of an append leaves a partial record behind
+                log.warn("Truncating partial record at offset {} of {}", valid, path);
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+            log.debug("Loaded {} values from {}", values.size(), path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load dictionary " + path, e);
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package ru.practicum.stats.columnar;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.stats.dto.TimeSeriesDto;
+import ru.practicum.stats.dto.ViewStats;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.service.TimeSeriesBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hit store that keeps hits in memory-mapped columnar segment files, one series of segments per time shard.
+ * Queries skip segments by their min/max time and scan the remaining columns directly.
+ */
+@Slf4j
+public class ColumnarHitStore implements AutoCloseable {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int MAX_BATCH_KEYS = 100_000;
+
+    private final Path directory;
+    private final long shardSeconds;
+    private final int segmentCapacity;
+    private final long sealDelaySeconds;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ColumnarDictionary apps;
+    private final ColumnarDictionary uris;
+    private final ColumnarDictionary ips;
+    private final BatchKeyLog batchKeys;
+    private final List<HitSegment> segments = new ArrayList<>();
+    private final Map<Long, HitSegment> openSegments = new HashMap<>();
+    private final Map<Long, Integer> nextSequence = new HashMap<>();
+
+    public ColumnarHitStore(Path directory, Duration shardDuration, int segmentCapacity, Duration sealDelay) {
+        if (shardDuration.getSeconds() <= 0) {
+            throw new IllegalArgumentException("Shard duration must be at least one second");
+        }
+        if (segmentCapacity <= 0) {
+            throw new IllegalArgumentException("Segment capacity must be positive");
+        }
+        this.directory = directory;
+        this.shardSeconds = shardDuration.getSeconds();
+        this.segmentCapacity = segmentCapacity;
+        this.sealDelaySeconds = sealDelay.getSeconds();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create store directory " + directory, e);
+        }
+        this.apps = new ColumnarDictionary(directory.resolve("apps.dict"));
+        this.uris = new ColumnarDictionary(directory.resolve("uris.dict"));
+        this.ips = new ColumnarDictionary(directory.resolve("ips.dict"));
+        this.batchKeys = new BatchKeyLog(directory.resolve("batch-keys.log"), MAX_BATCH_KEYS);
+        loadSegments();
+        sealExpired(now());
+        log.info("Opened columnar hit store in {}: {} segments, {} apps, {} uris, {} ips",
+                directory, segments.size(), apps.size(), uris.size(), ips.size());
+    }
+
+    public void append(List<Hit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            appendRows(hits);
+            flushDictionaries();
+            sealExpired(now());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends the hits unless a batch with the same key was appended before. The key is written to the store
+     * directory right after the rows, so a batch replayed after a restart is skipped as well; only a crash between
+     * the two writes lets the replay be saved a second time.
+     *
+     * @return whether the hits were appended
+     */
+    public boolean append(List<Hit> hits, String batchKey) {
+        lock.writeLock().lock();
+        try {
+            if (batchKeys.contains(batchKey)) {
+                return false;
+            }
+            appendRows(hits);
+            batchKeys.add(batchKey);
+            flushDictionaries();
+            batchKeys.flush();
+            sealExpired(now());
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uriFilter, boolean unique) {
+        long from = toEpochSecond(start) + (start.getNano() > 0 ? 1 : 0);
+        long to = toEpochSecond(end);
+
+        lock.readLock().lock();
+        try {
+            boolean[] allowed = uriMask(uriFilter);
+            if (allowed != null && allowed.length == 0) {
+                return List.of();
+            }
+            List<HitSegment> matching = overlapping(from, to);
+
+            List<ViewStats> stats = unique
+                    ? countUnique(matching, from, to, allowed)
+                    : count(matching, from, to, allowed);
+            stats.sort(Comparator.comparing(ViewStats::getHits).reversed());
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<TimeSeriesDto> getTimeSeries(TimeSeriesBuilder builder, LocalDateTime start, LocalDateTime end,
+                                             List<String> uriFilter, boolean unique) {
+        long from = toEpochSecond(start) + (start.getNano() > 0 ? 1 : 0);
+        long to = toEpochSecond(end);
+        long firstBucket = toEpochSecond(builder.getFirstBucket());
+        long bucketSeconds = builder.getInterval().getUnit().getDuration().getSeconds();
+
+        lock.readLock().lock();
+        try {
+            boolean[] allowed = uriMask(uriFilter);
+            if (allowed != null && allowed.length == 0) {
+                return List.of();
+            }
+
+            Map<EndpointKey, Set<Long>> distinct = new HashMap<>();
+            for (HitSegment segment : overlapping(from, to)) {
+                int rows = segment.getCount();
+                LongBuffer times = segment.times();
+                IntBuffer appIds = segment.appIds();
+                IntBuffer uriIds = segment.uriIds();
+                IntBuffer ipIds = segment.ipIds();
+                for (int i = 0; i < rows; i++) {
+                    long time = times.get(i);
+                    if (time < from || time > to) {
+                        continue;
+                    }
+                    int uriId = uriIds.get(i);
+                    if (allowed != null && !allowed[uriId]) {
+                        continue;
+                    }
+                    EndpointKey key = new EndpointKey(appIds.get(i), uriId);
+                    int bucket = (int) ((time - firstBucket) / bucketSeconds);
+                    if (unique) {
+                        distinct.computeIfAbsent(key, k -> new HashSet<>())
+                                .add(((long) bucket << 32) | (ipIds.get(i) & 0xffffffffL));
+                    } else {
+                        builder.add(key, bucket, segment.weight(i));
+                    }
+                }
+            }
+            distinct.forEach((key, pairs) -> pairs.forEach(pair -> builder.add(key, (int) (pair >>> 32), 1)));
+            return builder.build(apps::get, uris::get);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (HitSegment segment : openSegments.values()) {
+                segment.force();
+            }
+            apps.close();
+            uris.close();
+            ips.close();
+            batchKeys.close();
+            log.info("Closed columnar hit store in {}", directory);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void appendRows(List<Hit> hits) {
+        for (Hit hit : hits) {
+            long time = toEpochSecond(hit.timestamp());
+            int appId = apps.getOrCreate(hit.app());
+            int uriId = uris.getOrCreate(hit.uri());
+            int ipId = ips.getOrCreate(HexFormat.of().formatHex(hit.ip()));
+
+            long shard = Math.floorDiv(time, shardSeconds) * shardSeconds;
+            HitSegment segment = openSegments.get(shard);
+            if (segment == null || !segment.append(time, appId, uriId, ipId, hit.count())) {
+                if (segment != null) {
+                    seal(segment);
+                }
+                segment = createSegment(shard);
+                segment.append(time, appId, uriId, ipId, hit.count());
+            }
+        }
+    }
+
+    private void flushDictionaries() {
+        apps.flush();
+        uris.flush();
+        ips.flush();
+    }
+
+    private boolean[] uriMask(List<String> uriFilter) {
+        if (uriFilter == null || uriFilter.isEmpty()) {
+            return null;
+        }
+        boolean[] allowed = new boolean[uris.size()];
+        boolean any = false;
+        for (String uri : uriFilter) {
+            int id = uris.find(uri);
+            if (id >= 0) {
+                allowed[id] = true;
+                any = true;
+            }
+        }
+        return any ? allowed : new boolean[0];
+    }
+
+    private List<HitSegment> overlapping(long from, long to) {
+        List<HitSegment> matching = new ArrayList<>();
+        for (HitSegment segment : segments) {
+            if (segment.overlaps(from, to)) {
+                matching.add(segment);
+            }
+        }
+        log.debug("Scanning {} of {} segments", matching.size(), segments.size());
+        return matching;
+    }
+
+    private List<ViewStats> count(List<HitSegment> matching, long from, long to, boolean[] allowed) {
+        long[][] counts = new long[apps.size()][];
+        int uriCount = uris.size();
+        for (HitSegment segment : matching) {
+            int rows = segment.getCount();
+            boolean inside = segment.getMinTime() >= from && segment.getMaxTime() <= to;
+            LongBuffer times = segment.times();
+            IntBuffer appIds = segment.appIds();
+            IntBuffer uriIds = segment.uriIds();
+            for (int i = 0; i < rows; i++) {
+                if (!inside) {
+                    long time = times.get(i);
+                    if (time < from || time > to) {
+                        continue;
+                    }
+                }
+                int uriId = uriIds.get(i);
+                if (allowed != null && !allowed[uriId]) {
+                    continue;
+                }
+                int appId = appIds.get(i);
+                if (counts[appId] == null) {
+                    counts[appId] = new long[uriCount];
+                }
+                counts[appId][uriId] += segment.weight(i);
+            }
+        }
+
+        List<ViewStats> stats = new ArrayList<>();
+        for (int appId = 0; appId < counts.length; appId++) {
+            if (counts[appId] == null) {
+                continue;
+            }
+            for (int uriId = 0; uriId < uriCount; uriId++) {
+                if (counts[appId][uriId] > 0) {
+                    stats.add(new ViewStats(apps.get(appId), uris.get(uriId), counts[appId][uriId]));
+                }
+            }
+        }
+        return stats;
+    }
+
+    private List<ViewStats> countUnique(List<HitSegment> matching, long from, long to, boolean[] allowed) {
+        // Each (uri, ip) pair is packed into a long per app, sorting then makes duplicates adjacent
+        long[][] pairs = new long[apps.size()][];
+        int[] sizes = new int[apps.size()];
+        for (HitSegment segment : matching) {
+            int rows = segment.getCount();
+            boolean inside = segment.getMinTime() >= from && segment.getMaxTime() <= to;
+            LongBuffer times = segment.times();
+            IntBuffer appIds = segment.appIds();
+            IntBuffer uriIds = segment.uriIds();
+            IntBuffer ipIds = segment.ipIds();
+            for (int i = 0; i < rows; i++) {
+                if (!inside) {
+                    long time = times.get(i);
+                    if (time < from || time > to) {
+                        continue;
+                    }
+                }
+                int uriId = uriIds.get(i);
+                if (allowed != null && !allowed[uriId]) {
+                    continue;
+                }
+                int appId = appIds.get(i);
+                long[] appPairs = pairs[appId];
+                if (appPairs == null) {
+                    appPairs = new long[64];
+                    pairs[appId] = appPairs;
+                } else if (sizes[appId] == appPairs.length) {
+                    appPairs = Arrays.copyOf(appPairs, appPairs.length * 2);
+                    pairs[appId] = appPairs;
+                }
+                appPairs[sizes[appId]++] = ((long) uriId << 32) | (ipIds.get(i) & 0xffffffffL);
+            }
+        }
+
+        List<ViewStats> stats = new ArrayList<>();
+        for (int appId = 0; appId < pairs.length; appId++) {
+            int size = sizes[appId];
+            if (size == 0) {
+                continue;
+            }
+            long[] appPairs = pairs[appId];
+            Arrays.sort(appPairs, 0, size);
+            int currentUri = (int) (appPairs[0] >>> 32);
+            long distinct = 1;
+            for (int i = 1; i < size; i++) {
+                int uriId = (int) (appPairs[i] >>> 32);
+                if (uriId != currentUri) {
+                    stats.add(new ViewStats(apps.get(appId), uris.get(currentUri), distinct));
+                    currentUri = uriId;
+                    distinct = 1;
+                } else if (appPairs[i] != appPairs[i - 1]) {
+                    distinct++;
+                }
+            }
+            stats.add(new ViewStats(apps.get(appId), uris.get(currentUri), distinct));
+        }
+        return stats;
+    }
+
+    private void loadSegments() {
+        Map<Long, List<HitSegment>> unsealed = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SEGMENT_SUFFIX + ".tmp")) {
+                    Files.delete(file);
+                    continue;
+                }
+                if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+                    continue;
+                }
+                String[] parts = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())
+                        .split("-");
+                long shard = Long.parseLong(parts[0]);
+                int sequence = Integer.parseInt(parts[1]);
+                HitSegment segment = HitSegment.open(file, shard);
+                segments.add(segment);
+                nextSequence.merge(shard, sequence + 1, Math::max);
+                if (!segment.isSealed() || !segment.isWeighted()) {
+                    unsealed.computeIfAbsent(shard, k -> new ArrayList<>()).add(segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load segments from " + directory, e);
+        }
+
+        unsealed.forEach((shard, shardSegments) -> {
+            for (HitSegment segment : shardSegments) {
+                if (segment.isFull() || !segment.isWeighted() || openSegments.containsKey(shard)) {
+                    seal(segment);
+                } else {
+                    openSegments.put(shard, segment);
+                }
+            }
+        });
+    }
+
+    private HitSegment createSegment(long shard) {
+        int sequence = nextSequence.merge(shard, 1, Integer::sum) - 1;
+        Path path = directory.resolve(SEGMENT_PREFIX + shard + "-" + sequence + SEGMENT_SUFFIX);
+        HitSegment segment = HitSegment.create(path, shard, segmentCapacity);
+        segments.add(segment);
+        openSegments.put(shard, segment);
+        log.debug("Created segment {}", path);
+        return segment;
+    }
+
+    private void sealExpired(long now) {
+        List<HitSegment> expired = new ArrayList<>();
+        for (HitSegment segment : openSegments.values()) {
+            if (segment.getShardStart() + shardSeconds + sealDelaySeconds <= now) {
+                expired.add(segment);
+            }
+        }
+        expired.forEach(this::seal);
+    }
+
+    private void seal(HitSegment segment) {
+        segment.seal();
+        openSegments.remove(segment.getShardStart(), segment);
+        log.debug("Sealed segment for shard {} with {} hits", segment.getShardStart(), segment.getCount());
+    }
+
+    private static long now() {
+        return toEpochSecond(LocalDateTime.now());
+    }
+
+    private static long toEpochSecond(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public record Hit(String app, String uri, byte[] ip, LocalDateTime timestamp, int count) {
+    }
+}
@@ -0,0 +1,120 @@
+package ru.practicum.stats.columnar;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.stats.dto.EndpointHitBatchResultDto;
+import ru.practicum.stats.dto.EndpointHitDto;
+import ru.practicum.stats.dto.TimeSeriesDto;
+import ru.practicum.stats.dto.ViewStats;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.service.EndpointHitParser;
+import ru.practicum.stats.service.StatsService;
+import ru.practicum.stats.service.TimeSeriesBuilder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Slf4j
+@RequiredArgsConstructor
+public class ColumnarStatsService implements StatsService {
+    private final ColumnarHitStore store;
+    private final EndpointHitParser hitParser;
+    private final int maxTimeSeriesBuckets;
+
+    @Override
+    public void saveHit(EndpointHitDto hitDto) {
+        log.debug("Saving hit: app={}, uri={}, ip={}, timestamp={}",
+                hitDto.getApp(), hitDto.getUri(), hitDto.getIp(), hitDto.getTimestamp());
+        store.append(List.of(toHit(hitParser.parse(hitDto))));
+        log.info("Hit saved successfully");
+    }
+
+    @Override
+    public EndpointHitBatchResultDto saveHits(List<EndpointHitDto> hitDtos, String batchKey) {
+        log.debug("Saving batch {} of {} hits", batchKey, hitDtos.size());
+        EndpointHitParser.ParsedBatch batch = hitParser.parseBatch(hitDtos);
+        if (!store.append(toHits(batch), batchKey)) {
+            log.info("Batch {} of {} hits was already saved, skipping", batchKey, hitDtos.size());
+            return EndpointHitBatchResultDto.builder()
+                    .received(hitDtos.size())
+                    .saved(0)
+                    .errors(List.of())
+                    .build();
+        }
+        log.info("Batch {} processed: received={}, saved={}, rejected={}",
+                batchKey, hitDtos.size(), batch.hits().size(), batch.errors().size());
+
+        return EndpointHitBatchResultDto.builder()
+                .received(hitDtos.size())
+                .saved(batch.hits().size())
+                .errors(batch.errors())
+                .build();
+    }
+
+    @Override
+    public EndpointHitBatchResultDto saveHits(List<EndpointHitDto> hitDtos) {
+        log.debug("Saving batch of {} hits", hitDtos.size());
+        EndpointHitParser.ParsedBatch batch = hitParser.parseBatch(hitDtos);
+        store.append(toHits(batch));
+        log.info("Batch processed: received={}, saved={}, rejected={}",
+                hitDtos.size(), batch.hits().size(), batch.errors().size());
+
+        return EndpointHitBatchResultDto.builder()
+                .received(hitDtos.size())
+                .saved(batch.hits().size())
+                .errors(batch.errors())
+                .build();
+    }
+
+    @Override
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        log.debug("Getting stats: start={}, end={}, uris={}, unique={}", start, end, uris, unique);
+        List<ViewStats> stats = store.getStats(start, end, uris, unique != null && unique);
+        log.info("Returning {} stats records", stats.size());
+        return stats;
+    }
+
+    @Override
+    public List<ViewStats> getApproxUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        log.debug("Columnar store answers approximate unique stats exactly");
+        return getStats(start, end, uris, true);
+    }
+
+    @Override
+    public List<ViewStats> getTopStats(LocalDateTime start, LocalDateTime end, int k, Boolean unique, boolean exact) {
+        List<ViewStats> stats = store.getStats(start, end, null, unique != null && unique);
+        return stats.subList(0, Math.min(k, stats.size()));
+    }
+
+    @Override
+    public List<TimeSeriesDto> getTimeSeries(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                             RollupGranularity interval, Boolean unique) {
+        log.debug("Getting time series: start={}, end={}, uris={}, interval={}, unique={}",
+                start, end, uris, interval, unique);
+        return store.getTimeSeries(new TimeSeriesBuilder(interval, start, end, maxTimeSeriesBuckets),
+                start, end, uris, unique != null && unique);
+    }
+
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique,
+                            long offset, Integer limit, Consumer<ViewStats> consumer) {
+        // Aggregation happens in memory anyway, the result is one row per app and uri
+        List<ViewStats> stats = store.getStats(start, end, uris, unique != null && unique);
+        stats.stream()
+                .skip(offset)
+                .limit(limit != null ? limit : Long.MAX_VALUE)
+                .forEach(consumer);
+    }
+
+    private List<ColumnarHitStore.Hit> toHits(EndpointHitParser.ParsedBatch batch) {
+        return batch.hits().stream()
+                .map(this::toHit)
+                .toList();
+    }
+
+    private ColumnarHitStore.Hit toHit(EndpointHitParser.ParsedHit hit) {
+        return new ColumnarHitStore.Hit(hit.dto().getApp(), hit.dto().getUri(), hit.ip(), hit.timestamp(),
+                hit.count());
+    }
+}
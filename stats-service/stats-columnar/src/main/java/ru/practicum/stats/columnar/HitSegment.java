@@ -0,0 +1,200 @@
+package ru.practicum.stats.columnar;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One file of hits stored column by column: epoch seconds, app id, uri id, ip id and weight, the number of hits
+ * the row stands for. A segment is appended to while open and is compacted to its exact size once sealed.
+ * Segments written before the weight column existed are read with a weight of 1 and are sealed on open.
+ */
+class HitSegment {
+    private static final int MAGIC = 0x45574d53;
+    private static final int HEADER_SIZE = 64;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int COUNT_OFFSET = 8;
+    private static final int SEALED_OFFSET = 12;
+    private static final int MIN_TIME_OFFSET = 16;
+    private static final int MAX_TIME_OFFSET = 24;
+    private static final int WEIGHTED_OFFSET = 32;
+
+    private final Path path;
+    private final long shardStart;
+    private MappedByteBuffer buffer;
+    private LongBuffer times;
+    private IntBuffer appIds;
+    private IntBuffer uriIds;
+    private IntBuffer ipIds;
+    private IntBuffer weights;
+    private int capacity;
+    private volatile int count;
+    private volatile long minTime;
+    private volatile long maxTime;
+    private boolean sealed;
+
+    private HitSegment(Path path, long shardStart) {
+        this.path = path;
+        this.shardStart = shardStart;
+    }
+
+    static HitSegment create(Path path, long shardStart, int capacity) {
+        HitSegment segment = new HitSegment(path, shardStart);
+        segment.map(capacity, true, true);
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(WEIGHTED_OFFSET, 1);
+        segment.buffer.putInt(CAPACITY_OFFSET, capacity);
+        segment.buffer.putLong(MIN_TIME_OFFSET, Long.MAX_VALUE);
+        segment.buffer.putLong(MAX_TIME_OFFSET, Long.MIN_VALUE);
+        segment.minTime = Long.MAX_VALUE;
+        segment.maxTime = Long.MIN_VALUE;
+        return segment;
+    }
+
+    static HitSegment open(Path path, long shardStart) {
+        HitSegment segment = new HitSegment(path, shardStart);
+        int capacity;
+        boolean weighted;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC) {
+                throw new IllegalStateException("Not a hit segment: " + path);
+            }
+            capacity = header.getInt(CAPACITY_OFFSET);
+            weighted = header.getInt(WEIGHTED_OFFSET) == 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open segment " + path, e);
+        }
+        segment.map(capacity, false, weighted);
+        segment.count = segment.buffer.getInt(COUNT_OFFSET);
+        segment.sealed = segment.buffer.getInt(SEALED_OFFSET) == 1;
+        segment.minTime = segment.buffer.getLong(MIN_TIME_OFFSET);
+        segment.maxTime = segment.buffer.getLong(MAX_TIME_OFFSET);
+        return segment;
+    }
+
+    boolean append(long time, int appId, int uriId, int ipId, int weight) {
+        if (sealed || weights == null || count == capacity) {
+            return false;
+        }
+        int row = count;
+        times.put(row, time);
+        appIds.put(row, appId);
+        uriIds.put(row, uriId);
+        ipIds.put(row, ipId);
+        weights.put(row, weight);
+        if (time < minTime) {
+            minTime = time;
+            buffer.putLong(MIN_TIME_OFFSET, time);
+        }
+        if (time > maxTime) {
+            maxTime = time;
+            buffer.putLong(MAX_TIME_OFFSET, time);
+        }
+        // The row count is published last so a reader never sees a half written row
+        count = row + 1;
+        buffer.putInt(COUNT_OFFSET, count);
+        return true;
+    }
+
+    void seal() {
+        if (sealed && weights != null) {
+            return;
+        }
+        int rows = count;
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        HitSegment compacted = create(tmp, shardStart, Math.max(rows, 1));
+        for (int i = 0; i < rows; i++) {
+            compacted.append(times.get(i), appIds.get(i), uriIds.get(i), ipIds.get(i), weight(i));
+        }
+        compacted.buffer.putInt(SEALED_OFFSET, 1);
+        compacted.buffer.force();
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to seal segment " + path, e);
+        }
+        map(compacted.capacity, false, true);
+        sealed = true;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    boolean overlaps(long from, long to) {
+        return count > 0 && minTime <= to && maxTime >= from;
+    }
+
+    boolean isFull() {
+        return count == capacity;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    boolean isWeighted() {
+        return weights != null;
+    }
+
+    long getShardStart() {
+        return shardStart;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getMinTime() {
+        return minTime;
+    }
+
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    LongBuffer times() {
+        return times;
+    }
+
+    IntBuffer appIds() {
+        return appIds;
+    }
+
+    IntBuffer uriIds() {
+        return uriIds;
+    }
+
+    IntBuffer ipIds() {
+        return ipIds;
+    }
+
+    int weight(int row) {
+        return weights != null ? weights.get(row) : 1;
+    }
+
+    private void map(int capacity, boolean create, boolean weighted) {
+        long size = HEADER_SIZE + (weighted ? 24L : 20L) * capacity;
+        try (FileChannel channel = create
+                ? FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map segment " + path, e);
+        }
+        this.capacity = capacity;
+        times = buffer.slice(HEADER_SIZE, 8 * capacity).asLongBuffer();
+        appIds = buffer.slice(HEADER_SIZE + 8 * capacity, 4 * capacity).asIntBuffer();
+        uriIds = buffer.slice(HEADER_SIZE + 12 * capacity, 4 * capacity).asIntBuffer();
+        ipIds = buffer.slice(HEADER_SIZE + 16 * capacity, 4 * capacity).asIntBuffer();
+        weights = weighted ? buffer.slice(HEADER_SIZE + 20 * capacity, 4 * capacity).asIntBuffer() : null;
+    }
+}
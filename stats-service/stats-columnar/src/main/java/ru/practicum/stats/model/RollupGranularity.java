@@ -0,0 +1,35 @@
+package ru.practicum.stats.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+public enum RollupGranularity {
+    MINUTE("endpoint_hit_rollup_minute", ChronoUnit.MINUTES),
+    HOUR("endpoint_hit_rollup_hour", ChronoUnit.HOURS),
+    DAY("endpoint_hit_rollup_day", ChronoUnit.DAYS);
+
+    private final String table;
+    private final ChronoUnit unit;
+
+    RollupGranularity(String table, ChronoUnit unit) {
+        this.table = table;
+        this.unit = unit;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public ChronoUnit getUnit() {
+        return unit;
+    }
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plus(1, unit);
+    }
+}
@@ -0,0 +1,120 @@
+package ru.practicum.stats.service;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.dto.EndpointHitDto;
+import ru.practicum.stats.dto.EndpointHitErrorDto;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+public class EndpointHitParser {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Validator validator;
+    private final int maxBatchSize;
+    private final int maxHitCount;
+
+    public EndpointHitParser(Validator validator,
+                             @Value("${stats.ingest.max-batch-size:10000}") int maxBatchSize,
+                             @Value("${stats.ingest.max-hit-count:100000}") int maxHitCount) {
+        this.validator = validator;
+        this.maxBatchSize = maxBatchSize;
+        this.maxHitCount = maxHitCount;
+    }
+
+    public ParsedHit parse(EndpointHitDto hitDto) {
+        String countError = validateCount(hitDto);
+        if (countError != null) {
+            throw new IllegalArgumentException(countError);
+        }
+        return new ParsedHit(hitDto,
+                LocalDateTime.parse(hitDto.getTimestamp(), FORMATTER),
+                IpAddressCodec.encode(hitDto.getIp()),
+                count(hitDto));
+    }
+
+    public ParsedBatch parseBatch(List<EndpointHitDto> hitDtos) {
+        if (hitDtos.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size " + hitDtos.size() +
+                    " exceeds the limit of " + maxBatchSize + " hits");
+        }
+
+        List<ParsedHit> hits = new ArrayList<>(hitDtos.size());
+        List<EndpointHitErrorDto> errors = new ArrayList<>();
+
+        for (int i = 0; i < hitDtos.size(); i++) {
+            EndpointHitDto hitDto = hitDtos.get(i);
+            if (hitDto == null) {
+                errors.add(new EndpointHitErrorDto(i, "Hit cannot be null"));
+                continue;
+            }
+
+            Set<ConstraintViolation<EndpointHitDto>> violations = validator.validate(hitDto);
+            if (!violations.isEmpty()) {
+                errors.add(new EndpointHitErrorDto(i, violations.stream()
+                        .map(violation -> String.format("[%s] %s",
+                                violation.getPropertyPath(),
+                                violation.getMessage()))
+                        .sorted()
+                        .collect(Collectors.joining("; "))));
+                continue;
+            }
+
+            String countError = validateCount(hitDto);
+            if (countError != null) {
+                errors.add(new EndpointHitErrorDto(i, "[count] " + countError));
+                continue;
+            }
+
+            LocalDateTime timestamp;
+            try {
+                timestamp = LocalDateTime.parse(hitDto.getTimestamp(), FORMATTER);
+            } catch (DateTimeParseException e) {
+                errors.add(new EndpointHitErrorDto(i,
+                        "[timestamp] Invalid date format. Expected format: yyyy-MM-dd HH:mm:ss"));
+                continue;
+            }
+
+            byte[] ip;
+            try {
+                ip = IpAddressCodec.encode(hitDto.getIp());
+            } catch (IllegalArgumentException e) {
+                errors.add(new EndpointHitErrorDto(i, "[ip] " + e.getMessage()));
+                continue;
+            }
+
+            hits.add(new ParsedHit(hitDto, timestamp, ip, count(hitDto)));
+        }
+
+        log.debug("Parsed batch: received={}, valid={}, rejected={}", hitDtos.size(), hits.size(), errors.size());
+        return new ParsedBatch(hits, errors);
+    }
+
+    private String validateCount(EndpointHitDto hitDto) {
+        if (hitDto.getCount() != null && hitDto.getCount() > maxHitCount) {
+            return "Count must not exceed " + maxHitCount;
+        }
+        return null;
+    }
+
+    private static int count(EndpointHitDto hitDto) {
+        return hitDto.getCount() != null ? hitDto.getCount() : 1;
+    }
+
+    public record ParsedHit(EndpointHitDto dto, LocalDateTime timestamp, byte[] ip, int count) {
+    }
+
+    public record ParsedBatch(List<ParsedHit> hits, List<EndpointHitErrorDto> errors) {
+    }
+}
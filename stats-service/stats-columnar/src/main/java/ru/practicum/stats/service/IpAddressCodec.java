@@ -0,0 +1,58 @@
+package ru.practicum.stats.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+public final class IpAddressCodec {
+    public static final int LENGTH = 16;
+
+    private IpAddressCodec() {
+    }
+
+    public static byte[] encode(String ip) {
+        if (ip.indexOf(':') >= 0) {
+            return encodeIpv6(ip);
+        }
+        return encodeIpv4(ip);
+    }
+
+    private static byte[] encodeIpv4(String ip) {
+        String[] parts = ip.split("\\.", -1);
+        if (parts.length != 4) {
+            throw invalid(ip);
+        }
+        // IPv4 addresses are stored as IPv4-mapped IPv6 (::ffff:a.b.c.d)
+        byte[] bytes = new byte[LENGTH];
+        bytes[10] = (byte) 0xff;
+        bytes[11] = (byte) 0xff;
+        for (int i = 0; i < 4; i++) {
+            String part = parts[i];
+            if (part.isEmpty() || part.length() > 3 || !part.chars().allMatch(Character::isDigit)) {
+                throw invalid(ip);
+            }
+            int octet = Integer.parseInt(part);
+            if (octet > 255) {
+                throw invalid(ip);
+            }
+            bytes[12 + i] = (byte) octet;
+        }
+        return bytes;
+    }
+
+    private static byte[] encodeIpv6(String ip) {
+        try {
+            // Brackets force literal parsing, so an invalid value never turns into a DNS lookup
+            byte[] address = InetAddress.getByName("[" + ip + "]").getAddress();
+            if (address.length == LENGTH) {
+                return address;
+            }
+            return encodeIpv4(InetAddress.getByAddress(address).getHostAddress());
+        } catch (UnknownHostException e) {
+            throw invalid(ip);
+        }
+    }
+
+    private static IllegalArgumentException invalid(String ip) {
+        return new IllegalArgumentException("Invalid IP address: " + ip);
+    }
+}
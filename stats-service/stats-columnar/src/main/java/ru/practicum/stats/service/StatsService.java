@@ -0,0 +1,34 @@
+package ru.practicum.stats.service;
+
+import ru.practicum.stats.dto.EndpointHitBatchResultDto;
+import ru.practicum.stats.dto.EndpointHitDto;
+import ru.practicum.stats.dto.TimeSeriesDto;
+import ru.practicum.stats.dto.ViewStats;
+import ru.practicum.stats.model.RollupGranularity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface StatsService {
+    void saveHit(EndpointHitDto hitDto);
+
+    EndpointHitBatchResultDto saveHits(List<EndpointHitDto> hitDtos);
+
+    /**
+     * Saves the batch unless a batch with the same key was already saved, in which case nothing is written.
+     */
+    EndpointHitBatchResultDto saveHits(List<EndpointHitDto> hitDtos, String batchKey);
+
+    List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique);
+
+    List<ViewStats> getApproxUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    List<ViewStats> getTopStats(LocalDateTime start, LocalDateTime end, int k, Boolean unique, boolean exact);
+
+    List<TimeSeriesDto> getTimeSeries(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                      RollupGranularity interval, Boolean unique);
+
+    void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique,
+                     long offset, Integer limit, Consumer<ViewStats> consumer);
+}
\ No newline at end of file
@@ -0,0 +1,80 @@
+package ru.practicum.stats.service;
+
+import ru.practicum.stats.dto.TimeSeriesDto;
+import ru.practicum.stats.dto.TimeSeriesPointDto;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.model.RollupGranularity;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+public class TimeSeriesBuilder {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final RollupGranularity interval;
+    private final LocalDateTime firstBucket;
+    private final int bucketCount;
+    private final Map<EndpointKey, long[]> series = new HashMap<>();
+
+    public TimeSeriesBuilder(RollupGranularity interval, LocalDateTime start, LocalDateTime end, int maxBuckets) {
+        this.interval = interval;
+        this.firstBucket = interval.floor(start);
+        long buckets = interval.getUnit().between(firstBucket, interval.floor(end)) + 1;
+        if (buckets > maxBuckets) {
+            throw new IllegalArgumentException("Requested range has " + buckets + " " +
+                    interval.name().toLowerCase() + " buckets, the limit is " + maxBuckets);
+        }
+        this.bucketCount = (int) buckets;
+    }
+
+    public RollupGranularity getInterval() {
+        return interval;
+    }
+
+    public LocalDateTime getFirstBucket() {
+        return firstBucket;
+    }
+
+    public void add(EndpointKey key, LocalDateTime bucketStart, long hits) {
+        add(key, (int) interval.getUnit().between(firstBucket, bucketStart), hits);
+    }
+
+    public void add(EndpointKey key, int bucketIndex, long hits) {
+        series.computeIfAbsent(key, k -> new long[bucketCount])[bucketIndex] += hits;
+    }
+
+    public Set<EndpointKey> keys() {
+        return series.keySet();
+    }
+
+    public List<TimeSeriesDto> build(IntFunction<String> appNames, IntFunction<String> uriNames) {
+        List<String> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(firstBucket.plus(i, interval.getUnit()).format(FORMATTER));
+        }
+
+        List<TimeSeriesDto> result = new ArrayList<>(series.size());
+        series.forEach((key, counts) -> {
+            List<TimeSeriesPointDto> points = new ArrayList<>(bucketCount);
+            for (int i = 0; i < bucketCount; i++) {
+                points.add(new TimeSeriesPointDto(buckets.get(i), counts[i]));
+            }
+            result.add(TimeSeriesDto.builder()
+                    .app(appNames.apply(key.appId()))
+                    .uri(uriNames.apply(key.uriId()))
+                    .hits(Arrays.stream(counts).sum())
+                    .points(points)
+                    .build());
+        });
+        result.sort(Comparator.comparing(TimeSeriesDto::getHits).reversed());
+        return result;
+    }
+}
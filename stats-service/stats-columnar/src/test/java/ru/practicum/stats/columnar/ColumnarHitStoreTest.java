@@ -0,0 +1,70 @@
+package ru.practicum.stats.columnar;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.stats.dto.ViewStats;
+import ru.practicum.stats.service.IpAddressCodec;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColumnarHitStoreTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 1, 2, 0, 0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void batchReplayedAfterRestartIsSkipped() {
+        List<ColumnarHitStore.Hit> batch = List.of(hit("/events/1", "10.0.0.1"), hit("/events/1", "10.0.0.2"));
+
+        try (ColumnarHitStore store = open()) {
+            assertThat(store.append(batch, "batch-1")).isTrue();
+            assertThat(store.append(batch, "batch-1")).isFalse();
+        }
+        try (ColumnarHitStore store = open()) {
+            assertThat(store.append(batch, "batch-1")).isFalse();
+            assertThat(store.append(batch, "batch-2")).isTrue();
+            assertThat(hits(store)).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void keysAreStillKnownAfterTheLogIsCompacted() {
+        List<String> keys = new ArrayList<>();
+        try (ColumnarHitStore store = open()) {
+            // Enough batches to rewrite the key log at least once
+            for (int i = 0; i < 250_000; i++) {
+                String key = UUID.randomUUID().toString();
+                keys.add(key);
+                store.append(List.of(), key);
+            }
+        }
+        try (ColumnarHitStore store = open()) {
+            assertThat(store.append(List.of(hit("/events/1", "10.0.0.1")), keys.get(keys.size() - 1))).isFalse();
+            assertThat(store.append(List.of(hit("/events/1", "10.0.0.1")), keys.get(0))).isTrue();
+            assertThat(hits(store)).isEqualTo(1);
+        }
+    }
+
+    private ColumnarHitStore open() {
+        return new ColumnarHitStore(directory, Duration.ofHours(1), 1024, Duration.ofMinutes(10));
+    }
+
+    private static long hits(ColumnarHitStore store) {
+        return store.getStats(START, END, null, false).stream()
+                .mapToLong(ViewStats::getHits)
+                .sum();
+    }
+
+    private static ColumnarHitStore.Hit hit(String uri, String ip) {
+        return new ColumnarHitStore.Hit("ewm-main-service", uri, IpAddressCodec.encode(ip), START.plusHours(1), 1);
+    }
+}
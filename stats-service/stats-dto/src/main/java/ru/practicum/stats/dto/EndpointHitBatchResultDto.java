@@ -0,0 +1,18 @@
+package ru.practicum.stats.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class EndpointHitBatchResultDto {
+    private Integer received;
+    private Integer saved;
+    private List<EndpointHitErrorDto> errors;
+}
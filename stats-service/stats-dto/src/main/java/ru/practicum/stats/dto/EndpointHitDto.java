@@ -1,6 +1,7 @@
 package ru.practicum.stats.dto;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
 import lombok.*;
 
 @Builder
@@ -22,4 +23,8 @@ public class EndpointHitDto {
 
     @NotBlank(message = "Timestamp cannot be blank")
     private String timestamp;
+
+    // Number of identical hits this record stands for, one if absent; the timestamp is the first of them
+    @Positive(message = "Count must be positive")
+    private Integer count;
 }
@@ -0,0 +1,33 @@
+package ru.practicum.stats.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Body of {@code POST /stats/query}. URIs may be listed as is or as numeric ids appended to {@code uriPrefix},
+ * e.g. prefix {@code /events/} and ids {@code [1, 2]}; without either all URIs are counted.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StatsQueryDto {
+    @NotBlank(message = "Start cannot be blank")
+    private String start;
+
+    @NotBlank(message = "End cannot be blank")
+    private String end;
+
+    private String unique;
+
+    private List<String> uris;
+
+    private String uriPrefix;
+
+    private List<Long> ids;
+}
@@ -0,0 +1,19 @@
+package ru.practicum.stats.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TimeSeriesDto {
+    private String app;
+    private String uri;
+    private Long hits;
+    private List<TimeSeriesPointDto> points;
+}
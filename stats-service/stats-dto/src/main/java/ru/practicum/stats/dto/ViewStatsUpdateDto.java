@@ -0,0 +1,21 @@
+package ru.practicum.stats.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Current totals of a URI since the start of a subscription; totals rather than increments, so applying an
+ * update twice or after a newer one does no harm.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ViewStatsUpdateDto {
+    private String app;
+    private String uri;
+    private Long hits;
+    private Long uniqueHits;
+}
@@ -0,0 +1,33 @@
+package ru.practicum.stats.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.practicum.stats.columnar.ColumnarHitStore;
+import ru.practicum.stats.columnar.ColumnarStatsService;
+import ru.practicum.stats.service.EndpointHitParser;
+import ru.practicum.stats.service.StatsService;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "stats.storage.engine", havingValue = "columnar")
+public class ColumnarStorageConfig {
+
+    @Bean
+    public ColumnarHitStore columnarHitStore(
+            @Value("${stats.columnar.directory:data/stats}") Path directory,
+            @Value("${stats.columnar.shard-duration:PT1H}") Duration shardDuration,
+            @Value("${stats.columnar.segment-capacity:1048576}") int segmentCapacity,
+            @Value("${stats.columnar.seal-delay:PT10M}") Duration sealDelay) {
+        return new ColumnarHitStore(directory, shardDuration, segmentCapacity, sealDelay);
+    }
+
+    @Bean
+    public StatsService columnarStatsService(ColumnarHitStore store, EndpointHitParser hitParser,
+                                             @Value("${stats.timeseries.max-buckets:10000}") int maxTimeSeriesBuckets) {
+        return new ColumnarStatsService(store, hitParser, maxTimeSeriesBuckets);
+    }
+}
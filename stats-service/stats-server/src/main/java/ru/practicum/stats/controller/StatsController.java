@@ -1,20 +1,34 @@
 package ru.practicum.stats.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.stats.dto.EndpointHitBatchResultDto;
 import ru.practicum.stats.dto.EndpointHitDto;
+import ru.practicum.stats.dto.StatsQueryDto;
+import ru.practicum.stats.dto.TimeSeriesDto;
 import ru.practicum.stats.dto.ViewStats;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.service.StatsPushService;
 import ru.practicum.stats.service.StatsService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -23,6 +37,11 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class StatsController {
     private final StatsService statsService;
+    private final StatsPushService pushService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${stats.query.max-uris:10000}")
+    private int maxQueryUris;
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
@@ -30,16 +49,171 @@ public class StatsController {
         log.info("Received hit request: app={}, uri={}, ip={}",
                 hitDto.getApp(), hitDto.getUri(), hitDto.getIp());
         statsService.saveHit(hitDto);
+        pushService.onHits(List.of(hitDto), List.of());
         log.debug("Hit saved successfully");
     }
 
+    @PostMapping("/hits")
+    @ResponseStatus(HttpStatus.CREATED)
+    public EndpointHitBatchResultDto hits(@RequestBody List<EndpointHitDto> hitDtos,
+                                          @RequestHeader(value = "Idempotency-Key", required = false)
+                                          String batchKey) {
+        log.info("Received batch hit request: size={}, key={}", hitDtos.size(), batchKey);
+        if (batchKey != null && !batchKey.isBlank()) {
+            if (batchKey.length() > 128) {
+                throw new IllegalArgumentException("Idempotency-Key must not be longer than 128 characters");
+            }
+            return notifySubscribers(hitDtos, statsService.saveHits(hitDtos, batchKey));
+        }
+        return notifySubscribers(hitDtos, statsService.saveHits(hitDtos));
+    }
+
     @GetMapping("/stats")
     public ResponseEntity<List<ViewStats>> getStats(
             @RequestParam("start") String startParam,
             @RequestParam("end") String endParam,
             @RequestParam(value = "uris", required = false) List<String> uris,
-            @RequestParam(value = "unique", required = false, defaultValue = "false") Boolean unique) {
+            @RequestParam(value = "unique", required = false, defaultValue = "false") String unique) {
+
+        LocalDateTime[] range = parseRange(startParam, endParam);
+        LocalDateTime start = range[0];
+        LocalDateTime end = range[1];
+
+        log.info("Received stats request: start={}, end={}, uris={}, unique={}",
+                start, end, uris, unique);
+
+        List<ViewStats> stats = queryStats(start, end, decodeUris(uris), unique);
+        log.debug("Returning {} stats records", stats.size());
+
+        return ResponseEntity.ok(stats);
+    }
+
+    @PostMapping("/stats/query")
+    public List<ViewStats> postStatsQuery(@Valid @RequestBody StatsQueryDto query) {
+        LocalDateTime[] range = parseRange(query.getStart(), query.getEnd());
+        List<String> uris = queryUris(query);
+        log.info("Received stats query: start={}, end={}, uris={}, unique={}",
+                range[0], range[1], uris != null ? uris.size() : "all", query.getUnique());
+
+        List<ViewStats> stats = queryStats(range[0], range[1], uris,
+                query.getUnique() != null ? query.getUnique() : "false");
+        log.debug("Returning {} stats records", stats.size());
+        return stats;
+    }
+
+    @GetMapping("/stats/top")
+    public List<ViewStats> getTopStats(
+            @RequestParam("start") String startParam,
+            @RequestParam("end") String endParam,
+            @RequestParam(defaultValue = "10") Integer k,
+            @RequestParam(value = "unique", required = false, defaultValue = "false") String unique,
+            @RequestParam(defaultValue = "false") Boolean exact) {
+
+        LocalDateTime[] range = parseRange(startParam, endParam);
+        log.info("Received top stats request: start={}, end={}, k={}, unique={}, exact={}",
+                range[0], range[1], k, unique, exact);
+
+        if (k <= 0) {
+            throw new IllegalArgumentException("Parameter k must be positive");
+        }
+        boolean uniqueHits = parseUnique(unique);
+
+        return statsService.getTopStats(range[0], range[1], k, uniqueHits, exact);
+    }
+
+    @GetMapping("/stats/timeseries")
+    public List<TimeSeriesDto> getTimeSeries(
+            @RequestParam("start") String startParam,
+            @RequestParam("end") String endParam,
+            @RequestParam(value = "uris", required = false) List<String> uris,
+            @RequestParam(defaultValue = "hour") String interval,
+            @RequestParam(value = "unique", required = false, defaultValue = "false") String unique) {
+
+        LocalDateTime[] range = parseRange(startParam, endParam);
+        log.info("Received time series request: start={}, end={}, uris={}, interval={}, unique={}",
+                range[0], range[1], uris, interval, unique);
+
+        RollupGranularity granularity = switch (interval.toLowerCase()) {
+            case "minute" -> RollupGranularity.MINUTE;
+            case "hour" -> RollupGranularity.HOUR;
+            case "day" -> RollupGranularity.DAY;
+            default -> throw new IllegalArgumentException("Invalid interval parameter. Expected minute, hour or day");
+        };
+        boolean uniqueHits = parseUnique(unique);
+
+        return statsService.getTimeSeries(range[0], range[1], decodeUris(uris), granularity, uniqueHits);
+    }
+
+    @GetMapping(value = "/stats/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamStats(
+            @RequestParam("start") String startParam,
+            @RequestParam("end") String endParam,
+            @RequestParam(value = "uris", required = false) List<String> uris,
+            @RequestParam(value = "unique", required = false, defaultValue = "false") String unique,
+            @RequestParam(defaultValue = "0") Long from,
+            @RequestParam(required = false) Integer size) {
+
+        LocalDateTime[] range = parseRange(startParam, endParam);
+        LocalDateTime start = range[0];
+        LocalDateTime end = range[1];
+
+        log.info("Received stream stats request: start={}, end={}, uris={}, unique={}, from={}, size={}",
+                start, end, uris, unique, from, size);
+
+        boolean uniqueHits = parseUnique(unique);
+        if (from < 0) {
+            throw new IllegalArgumentException("Parameter from must not be negative");
+        }
+        if (size != null && size <= 0) {
+            throw new IllegalArgumentException("Parameter size must be positive");
+        }
+
+        List<String> decodedUris = decodeUris(uris);
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                long[] written = new long[1];
+                statsService.streamStats(start, end, decodedUris, uniqueHits, from, size, stats -> {
+                    try {
+                        generator.writeObject(stats);
+                        written[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+                log.debug("Streamed {} stats records", written[0]);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
 
+    /**
+     * Streams view counts from {@code start} of every URI starting with {@code uriPrefix}: a {@code snapshot}
+     * event with the current totals, then {@code update} events with the new totals of URIs that got hits.
+     */
+    @GetMapping(value = "/stats/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(
+            @RequestParam("start") String startParam,
+            @RequestParam(value = "uriPrefix", required = false) String uriPrefix) {
+        LocalDateTime start = parseRange(startParam, startParam)[0];
+        log.info("Received stats subscription: start={}, uriPrefix={}", start, uriPrefix);
+        return pushService.subscribe(start, uriPrefix);
+    }
+
+    private EndpointHitBatchResultDto notifySubscribers(List<EndpointHitDto> hitDtos,
+                                                        EndpointHitBatchResultDto result) {
+        if (result.getSaved() > 0) {
+            pushService.onHits(hitDtos, result.getErrors());
+        }
+        return result;
+    }
+
+    private LocalDateTime[] parseRange(String startParam, String endParam) {
         String decodedStart = URLDecoder.decode(startParam, StandardCharsets.UTF_8);
         String decodedEnd = URLDecoder.decode(endParam, StandardCharsets.UTF_8);
 
@@ -53,23 +227,60 @@ public class StatsController {
             throw new IllegalArgumentException("Invalid date format. Required format: yyyy-MM-dd HH:mm:ss");
         }
 
-        log.info("Received stats request: start={}, end={}, uris={}, unique={}",
-                start, end, uris, unique);
-
         if (start.isAfter(end)) {
             log.warn("Invalid time range: start date {} is after end date {}", start, end);
             throw new IllegalArgumentException("Start date must be before end date");
         }
+        return new LocalDateTime[]{start, end};
+    }
+
+    private List<ViewStats> queryStats(LocalDateTime start, LocalDateTime end, List<String> uris, String unique) {
+        return switch (unique.toLowerCase()) {
+            case "false" -> statsService.getStats(start, end, uris, false);
+            case "true", "exact" -> statsService.getStats(start, end, uris, true);
+            case "approx" -> statsService.getApproxUniqueStats(start, end, uris);
+            default -> throw new IllegalArgumentException("Invalid unique parameter. Expected true, false, exact or approx");
+        };
+    }
+
+    private List<String> queryUris(StatsQueryDto query) {
+        boolean hasIds = query.getIds() != null && !query.getIds().isEmpty();
+        if (query.getUris() == null && !hasIds) {
+            return null;
+        }
+        if (hasIds && (query.getUriPrefix() == null || query.getUriPrefix().isEmpty())) {
+            throw new IllegalArgumentException("uriPrefix is required when ids are given");
+        }
+        int size = (query.getUris() != null ? query.getUris().size() : 0) + (hasIds ? query.getIds().size() : 0);
+        if (size > maxQueryUris) {
+            throw new IllegalArgumentException("Query contains " + size + " URIs, the limit is " + maxQueryUris);
+        }
+
+        List<String> uris = new ArrayList<>(size);
+        if (query.getUris() != null) {
+            uris.addAll(query.getUris());
+        }
+        if (hasIds) {
+            for (Long id : query.getIds()) {
+                uris.add(query.getUriPrefix() + id);
+            }
+        }
+        return uris;
+    }
+
+    private boolean parseUnique(String unique) {
+        return switch (unique.toLowerCase()) {
+            case "false" -> false;
+            case "true", "exact" -> true;
+            default -> throw new IllegalArgumentException("Invalid unique parameter. Expected true, false or exact");
+        };
+    }
 
-        List<String> decodedUris = uris != null ?
+    private List<String> decodeUris(List<String> uris) {
+        return uris != null ?
                 uris.stream()
                         .map(uri -> URLDecoder.decode(uri, StandardCharsets.UTF_8))
                         .collect(Collectors.toList()) :
                 null;
-
-        List<ViewStats> stats = statsService.getStats(start, end, decodedUris, unique);
-        log.debug("Returning {} stats records", stats.size());
-
-        return ResponseEntity.ok(stats);
     }
 }
\ No newline at end of file
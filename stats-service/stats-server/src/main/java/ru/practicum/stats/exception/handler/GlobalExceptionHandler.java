@@ -3,12 +3,15 @@ package ru.practicum.stats.exception.handler;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import ru.practicum.stats.exception.IngestOverloadedException;
+import ru.practicum.stats.exception.SubscriberLimitException;
 
 import java.time.format.DateTimeParseException;
 import java.util.Map;
@@ -78,6 +81,22 @@ public class GlobalExceptionHandler {
                 ));
     }
 
+    @ExceptionHandler
+    public ResponseEntity<Map<String, String>> handleIngestOverloadedException(IngestOverloadedException e) {
+        log.warn("IngestOverloadedException: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Map<String, String>> handleSubscriberLimitException(SubscriberLimitException e) {
+        log.warn("SubscriberLimitException: {}", e.getMessage());
+        // Subscribers accept text/event-stream only, so the content type is set rather than negotiated
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", e.getMessage()));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, String>> handleGenericException(Exception e) {
         log.error("Unexpected error: ", e);
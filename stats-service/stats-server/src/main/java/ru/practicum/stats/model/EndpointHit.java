@@ -17,15 +17,20 @@ public class EndpointHit {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(nullable = false)
-    private String app;
+    @Column(name = "app_id", nullable = false)
+    private Integer appId;
 
-    @Column(nullable = false)
-    private String uri;
+    @Column(name = "uri_id", nullable = false)
+    private Integer uriId;
 
     @Column(nullable = false)
-    private String ip;
+    private byte[] ip;
 
     @Column(nullable = false)
     private LocalDateTime timestamp;
+
+    // Number of identical hits aggregated by the client into this row
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer hits = 1;
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package ru.practicum.stats.model;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+public enum PartitionInterval {
+    DAY(ChronoUnit.DAYS, "yyyyMMdd"),
+    MONTH(ChronoUnit.MONTHS, "yyyyMM");
+
+    private final ChronoUnit unit;
+    private final DateTimeFormatter suffixFormatter;
+
+    PartitionInterval(ChronoUnit unit, String suffixPattern) {
+        this.unit = unit;
+        this.suffixFormatter = DateTimeFormatter.ofPattern(suffixPattern);
+    }
+
+    public LocalDateTime floor(LocalDateTime time) {
+        LocalDateTime day = time.truncatedTo(ChronoUnit.DAYS);
+        return this == MONTH ? day.withDayOfMonth(1) : day;
+    }
+
+    public LocalDateTime next(LocalDateTime start) {
+        return start.plus(1, unit);
+    }
+
+    public LocalDateTime minus(LocalDateTime start, long amount) {
+        return start.minus(amount, unit);
+    }
+
+    public String suffix(LocalDateTime start) {
+        return start.format(suffixFormatter);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.practicum.stats.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Part of a stats time range answered from one source: a rollup table when granularity is set,
+ * raw endpoint_hit rows otherwise. The slice is [from, to), or [from, to] when toInclusive is set.
+ */
+public record TimeSlice(RollupGranularity granularity, LocalDateTime from, LocalDateTime to, boolean toInclusive) {
+    public static TimeSlice raw(LocalDateTime from, LocalDateTime to, boolean toInclusive) {
+        return new TimeSlice(null, from, to, toInclusive);
+    }
+
+    public static TimeSlice rollup(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        return new TimeSlice(granularity, from, to, false);
+    }
+
+    public boolean isRaw() {
+        return granularity == null;
+    }
+}
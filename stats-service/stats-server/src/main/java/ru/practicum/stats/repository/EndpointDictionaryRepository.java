@@ -0,0 +1,68 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class EndpointDictionaryRepository {
+    public enum Dictionary {
+        APP("endpoint_app", "name"),
+        URI("endpoint_uri", "uri");
+
+        private final String table;
+        private final String column;
+
+        Dictionary(String table, String column) {
+            this.table = table;
+            this.column = column;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    // Runs in its own transaction so ids handed to the cache survive a rollback of the hit insert
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Map<String, Integer> getOrCreateIds(Dictionary dictionary, Collection<String> values) {
+        List<String> sorted = new ArrayList<>(values);
+        sorted.sort(null);
+        jdbcTemplate.batchUpdate("INSERT INTO " + dictionary.table + " (" + dictionary.column + ") VALUES (?) " +
+                        "ON CONFLICT (" + dictionary.column + ") DO NOTHING",
+                sorted, sorted.size(), (ps, value) -> ps.setString(1, value));
+        return findIds(dictionary, sorted);
+    }
+
+    public Map<String, Integer> findIds(Dictionary dictionary, Collection<String> values) {
+        Map<String, Integer> ids = new HashMap<>();
+        namedJdbcTemplate.query("SELECT id, " + dictionary.column + " AS value FROM " + dictionary.table +
+                        " WHERE " + dictionary.column + " IN (:values)",
+                new MapSqlParameterSource("values", values),
+                rs -> {
+                    ids.put(rs.getString("value"), rs.getInt("id"));
+                });
+        return ids;
+    }
+
+    public Map<Integer, String> findValues(Dictionary dictionary, Collection<Integer> ids) {
+        Map<Integer, String> values = new HashMap<>();
+        namedJdbcTemplate.query("SELECT id, " + dictionary.column + " AS value FROM " + dictionary.table +
+                        " WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", ids),
+                rs -> {
+                    values.put(rs.getInt("id"), rs.getString("value"));
+                });
+        return values;
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.EndpointHit;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class EndpointHitJdbcRepository {
+    private static final String INSERT_SQL =
+            "INSERT INTO endpoint_hit (app_id, uri_id, ip, timestamp, hits) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${stats.ingest.jdbc-batch-size:500}")
+    private int batchSize;
+
+    public int saveAll(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, hits, batchSize, (ps, hit) -> {
+            ps.setInt(1, hit.getAppId());
+            ps.setInt(2, hit.getUriId());
+            ps.setBytes(3, hit.getIp());
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+            ps.setInt(5, hit.getHits());
+        });
+        return hits.size();
+    }
+}
@@ -0,0 +1,70 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class EndpointHitPartitionRepository {
+    public static final String PARENT_TABLE = "endpoint_hit";
+    public static final String DEFAULT_PARTITION = "endpoint_hit_default";
+    public static final String PARTITION_PREFIX = "endpoint_hit_p";
+
+    private static final DateTimeFormatter BOUND_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isPartitioned() {
+        List<String> kinds = jdbcTemplate.queryForList(
+                "SELECT c.relkind::text FROM pg_class c WHERE c.oid = to_regclass(?)",
+                String.class, PARENT_TABLE);
+        return kinds.size() == 1 && "p".equals(kinds.get(0));
+    }
+
+    public List<String> findPartitionNames() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "WHERE i.inhparent = to_regclass(?) AND c.relname LIKE ?",
+                String.class, PARENT_TABLE, PARTITION_PREFIX + "%");
+    }
+
+    public Optional<LocalDateTime> findOldestDefaultTimestamp(LocalDateTime before) {
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM " + DEFAULT_PARTITION +
+                " WHERE timestamp < ?", Timestamp.class, Timestamp.valueOf(before));
+        return Optional.ofNullable(oldest).map(Timestamp::toLocalDateTime);
+    }
+
+    public int deleteDefaultBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE timestamp < ?",
+                Timestamp.valueOf(cutoff));
+    }
+
+    @Transactional
+    public int createPartition(String name, LocalDateTime from, LocalDateTime to) {
+        // Rows that landed in the default partition for this range have to move before ATTACH accepts the bounds
+        jdbcTemplate.execute("CREATE TABLE " + name +
+                " (LIKE " + PARENT_TABLE + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION +
+                        " WHERE timestamp >= ? AND timestamp < ? RETURNING *) " +
+                        "INSERT INTO " + name + " SELECT * FROM moved",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " ATTACH PARTITION " + name +
+                " FOR VALUES FROM ('" + from.format(BOUND_FORMATTER) + "') TO ('" + to.format(BOUND_FORMATTER) + "')");
+        return moved;
+    }
+
+    @Transactional
+    public void dropPartition(String name) {
+        jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + name);
+        jdbcTemplate.execute("DROP TABLE " + name);
+    }
+}
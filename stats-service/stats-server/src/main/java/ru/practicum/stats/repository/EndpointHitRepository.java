@@ -3,30 +3,62 @@ package ru.practicum.stats.repository;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
-import ru.practicum.stats.dto.ViewStats;
 import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.HitCount;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 public interface EndpointHitRepository extends JpaRepository<EndpointHit, Long> {
-    @Query("SELECT new ru.practicum.stats.dto.ViewStats(e.app, e.uri, COUNT(e)) " +
+    @Query("SELECT new ru.practicum.stats.model.HitCount(e.appId, e.uriId, SUM(e.hits)) " +
             "FROM EndpointHit e " +
             "WHERE e.timestamp BETWEEN :start AND :end " +
-            "AND (:uris IS NULL OR e.uri IN :uris) " +
-            "GROUP BY e.app, e.uri " +
-            "ORDER BY COUNT(e) DESC")
-    List<ViewStats> getStats(@Param("start") LocalDateTime start,
-                             @Param("end") LocalDateTime end,
-                             @Param("uris") List<String> uris);
+            "AND (:uriIds IS NULL OR e.uriId IN :uriIds) " +
+            "GROUP BY e.appId, e.uriId " +
+            "ORDER BY SUM(e.hits) DESC")
+    List<HitCount> getStats(@Param("start") LocalDateTime start,
+                            @Param("end") LocalDateTime end,
+                            @Param("uriIds") List<Integer> uriIds);
 
-    @Query("SELECT new ru.practicum.stats.dto.ViewStats(e.app, e.uri, COUNT(DISTINCT e.ip)) " +
+    @Query("SELECT new ru.practicum.stats.model.HitCount(e.appId, e.uriId, SUM(e.hits)) " +
+            "FROM EndpointHit e " +
+            "WHERE e.timestamp >= :start AND e.timestamp < :before " +
+            "AND (:uriIds IS NULL OR e.uriId IN :uriIds) " +
+            "GROUP BY e.appId, e.uriId")
+    List<HitCount> getStatsBefore(@Param("start") LocalDateTime start,
+                                  @Param("before") LocalDateTime before,
+                                  @Param("uriIds") List<Integer> uriIds);
+
+    @Query("SELECT new ru.practicum.stats.model.HitCount(e.appId, e.uriId, COUNT(DISTINCT e.ip)) " +
             "FROM EndpointHit e " +
             "WHERE e.timestamp BETWEEN :start AND :end " +
-            "AND (:uris IS NULL OR e.uri IN :uris) " +
-            "GROUP BY e.app, e.uri " +
+            "AND (:uriIds IS NULL OR e.uriId IN :uriIds) " +
+            "GROUP BY e.appId, e.uriId " +
             "ORDER BY COUNT(DISTINCT e.ip) DESC")
-    List<ViewStats> getStatsUnique(@Param("start") LocalDateTime start,
-                                   @Param("end") LocalDateTime end,
-                                   @Param("uris") List<String> uris);
-}
\ No newline at end of file
+    List<HitCount> getStatsUnique(@Param("start") LocalDateTime start,
+                                  @Param("end") LocalDateTime end,
+                                  @Param("uriIds") List<Integer> uriIds);
+
+    @Query("SELECT new ru.practicum.stats.model.HitCount(e.appId, e.uriId, COUNT(DISTINCT e.ip)) " +
+            "FROM EndpointHit e " +
+            "WHERE e.timestamp >= :start AND e.timestamp < :before " +
+            "AND (:uriIds IS NULL OR e.uriId IN :uriIds) " +
+            "GROUP BY e.appId, e.uriId")
+    List<HitCount> getStatsUniqueBefore(@Param("start") LocalDateTime start,
+                                        @Param("before") LocalDateTime before,
+                                        @Param("uriIds") List<Integer> uriIds);
+
+    @Query("SELECT new ru.practicum.stats.model.HitCount(e.appId, e.uriId, COUNT(DISTINCT e.ip)) " +
+            "FROM EndpointHit e " +
+            "WHERE e.timestamp BETWEEN :start AND :end " +
+            "AND (:uriIds IS NULL OR e.uriId IN :uriIds) " +
+            "AND NOT EXISTS (SELECT 1 FROM EndpointHit p " +
+            "WHERE p.uriId = e.uriId AND p.appId = e.appId AND p.ip = e.ip " +
+            "AND p.timestamp >= :seenFrom AND p.timestamp < :seenTo) " +
+            "GROUP BY e.appId, e.uriId")
+    List<HitCount> getStatsUniqueNotSeen(@Param("start") LocalDateTime start,
+                                         @Param("end") LocalDateTime end,
+                                         @Param("uriIds") List<Integer> uriIds,
+                                         @Param("seenFrom") LocalDateTime seenFrom,
+                                         @Param("seenTo") LocalDateTime seenTo);
+}
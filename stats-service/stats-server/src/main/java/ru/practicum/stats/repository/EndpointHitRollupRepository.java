@@ -0,0 +1,121 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.HitCount;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.model.TimeSlice;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+@Repository
+@RequiredArgsConstructor
+public class EndpointHitRollupRepository {
+    private static final Comparator<RollupKey> KEY_ORDER = Comparator.comparing(RollupKey::bucketStart)
+            .thenComparing(RollupKey::appId)
+            .thenComparing(RollupKey::uriId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public void increment(List<EndpointHit> hits) {
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            // Sorted keys keep the row lock order stable between concurrent writers
+            Map<RollupKey, Long> counts = new TreeMap<>(KEY_ORDER);
+            for (EndpointHit hit : hits) {
+                RollupKey key = new RollupKey(granularity.floor(hit.getTimestamp()), hit.getAppId(), hit.getUriId());
+                counts.merge(key, (long) hit.getHits(), Long::sum);
+            }
+            upsert(granularity, counts);
+        }
+    }
+
+    public List<HitCount> getStats(List<TimeSlice> slices, List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = statsQuery(slices, uriIds, params) + " ORDER BY hits DESC";
+        return namedJdbcTemplate.query(sql, params, (rs, rowNum) -> new HitCount(
+                rs.getInt("app_id"),
+                rs.getInt("uri_id"),
+                rs.getLong("hits")));
+    }
+
+    public void forEachHourlyCount(LocalDateTime from, boolean fromRollup, BiConsumer<LocalDateTime, HitCount> consumer) {
+        String sql = fromRollup
+                ? "SELECT bucket_start, app_id, uri_id, hits FROM " + RollupGranularity.HOUR.getTable() +
+                " WHERE bucket_start >= :from"
+                : "SELECT date_trunc('hour', timestamp) AS bucket_start, app_id, uri_id, SUM(hits) AS hits " +
+                "FROM endpoint_hit WHERE timestamp >= :from GROUP BY 1, app_id, uri_id";
+        namedJdbcTemplate.query(sql, new MapSqlParameterSource("from", Timestamp.valueOf(from)), rs -> {
+            consumer.accept(rs.getTimestamp("bucket_start").toLocalDateTime(), new HitCount(
+                    rs.getInt("app_id"),
+                    rs.getInt("uri_id"),
+                    rs.getLong("hits")));
+        });
+    }
+
+    public int deleteBefore(LocalDateTime cutoff) {
+        int deleted = 0;
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            deleted += jdbcTemplate.update("DELETE FROM " + granularity.getTable() + " WHERE bucket_start < ?",
+                    Timestamp.valueOf(cutoff));
+        }
+        return deleted;
+    }
+
+    static String statsQuery(List<TimeSlice> slices, List<Integer> uriIds, MapSqlParameterSource params) {
+        String uriFilter = "";
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+            uriFilter = " AND uri_id IN (:uriIds)";
+        }
+
+        List<String> parts = new ArrayList<>(slices.size());
+        for (int i = 0; i < slices.size(); i++) {
+            TimeSlice slice = slices.get(i);
+            params.addValue("from" + i, Timestamp.valueOf(slice.from()));
+            params.addValue("to" + i, Timestamp.valueOf(slice.to()));
+            String upperBound = slice.toInclusive() ? " <= :to" : " < :to";
+            if (slice.isRaw()) {
+                parts.add("SELECT app_id, uri_id, SUM(hits) AS hits FROM endpoint_hit " +
+                        "WHERE timestamp >= :from" + i + " AND timestamp" + upperBound + i + uriFilter +
+                        " GROUP BY app_id, uri_id");
+            } else {
+                parts.add("SELECT app_id, uri_id, SUM(hits) AS hits FROM " + slice.granularity().getTable() +
+                        " WHERE bucket_start >= :from" + i + " AND bucket_start" + upperBound + i + uriFilter +
+                        " GROUP BY app_id, uri_id");
+            }
+        }
+
+        return "SELECT app_id, uri_id, SUM(hits) AS hits FROM (" +
+                String.join(" UNION ALL ", parts) +
+                ") s GROUP BY app_id, uri_id";
+    }
+
+    private void upsert(RollupGranularity granularity, Map<RollupKey, Long> counts) {
+        String sql = "INSERT INTO " + granularity.getTable() + " (bucket_start, app_id, uri_id, hits) " +
+                "VALUES (?, ?, ?, ?) " +
+                "ON CONFLICT (bucket_start, app_id, uri_id) DO UPDATE " +
+                "SET hits = " + granularity.getTable() + ".hits + EXCLUDED.hits";
+        List<Map.Entry<RollupKey, Long>> entries = new ArrayList<>(counts.entrySet());
+        jdbcTemplate.batchUpdate(sql, entries, entries.size(), (ps, entry) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(entry.getKey().bucketStart()));
+            ps.setInt(2, entry.getKey().appId());
+            ps.setInt(3, entry.getKey().uriId());
+            ps.setLong(4, entry.getValue());
+        });
+    }
+
+    private record RollupKey(LocalDateTime bucketStart, int appId, int uriId) {
+    }
+}
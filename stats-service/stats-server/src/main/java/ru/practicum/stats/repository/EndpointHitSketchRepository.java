@@ -0,0 +1,144 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.sketch.HyperLogLog;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+@Repository
+@RequiredArgsConstructor
+public class EndpointHitSketchRepository {
+    private static final Comparator<SketchKey> KEY_ORDER = Comparator.comparing(SketchKey::bucketStart)
+            .thenComparing(SketchKey::appId)
+            .thenComparing(SketchKey::uriId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Value("${stats.hll.precision:12}")
+    private int precision;
+
+    /**
+     * Merges {@code sketches} into the stored ones, creating rows that do not exist yet.
+     */
+    @Transactional
+    public void merge(Map<SketchKey, HyperLogLog> sketches) {
+        if (sketches.isEmpty()) {
+            return;
+        }
+        // Sorted keys keep the row lock order stable between concurrent writers
+        List<SketchKey> keys = new ArrayList<>(sketches.keySet());
+        keys.sort(KEY_ORDER);
+
+        byte[] empty = new HyperLogLog(precision).toBytes();
+        jdbcTemplate.batchUpdate("INSERT INTO endpoint_hit_hll (bucket_start, app_id, uri_id, sketch) " +
+                        "VALUES (?, ?, ?, ?) ON CONFLICT (bucket_start, app_id, uri_id) DO NOTHING",
+                keys, keys.size(), (ps, key) -> {
+                    ps.setTimestamp(1, Timestamp.valueOf(key.bucketStart()));
+                    ps.setInt(2, key.appId());
+                    ps.setInt(3, key.uriId());
+                    ps.setBytes(4, empty);
+                });
+
+        Set<Timestamp> buckets = new HashSet<>();
+        Set<Integer> appIds = new HashSet<>();
+        Set<Integer> uriIds = new HashSet<>();
+        for (SketchKey key : keys) {
+            buckets.add(Timestamp.valueOf(key.bucketStart()));
+            appIds.add(key.appId());
+            uriIds.add(key.uriId());
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("buckets", buckets)
+                .addValue("appIds", appIds)
+                .addValue("uriIds", uriIds);
+
+        Map<SketchKey, HyperLogLog> updated = new TreeMap<>(KEY_ORDER);
+        namedJdbcTemplate.query("SELECT bucket_start, app_id, uri_id, sketch FROM endpoint_hit_hll " +
+                "WHERE bucket_start IN (:buckets) AND app_id IN (:appIds) AND uri_id IN (:uriIds) " +
+                "ORDER BY bucket_start, app_id, uri_id FOR UPDATE", params, rs -> {
+                    SketchKey key = new SketchKey(rs.getTimestamp("bucket_start").toLocalDateTime(),
+                            rs.getInt("app_id"), rs.getInt("uri_id"));
+                    HyperLogLog added = sketches.get(key);
+                    if (added != null) {
+                        HyperLogLog sketch = HyperLogLog.fromBytes(rs.getBytes("sketch"));
+                        sketch.merge(added);
+                        updated.put(key, sketch);
+                    }
+                });
+
+        List<Map.Entry<SketchKey, HyperLogLog>> entries = new ArrayList<>(updated.entrySet());
+        jdbcTemplate.batchUpdate("UPDATE endpoint_hit_hll SET sketch = ? " +
+                        "WHERE bucket_start = ? AND app_id = ? AND uri_id = ?",
+                entries, entries.size(), (ps, entry) -> {
+                    ps.setBytes(1, entry.getValue().toBytes());
+                    ps.setTimestamp(2, Timestamp.valueOf(entry.getKey().bucketStart()));
+                    ps.setInt(3, entry.getKey().appId());
+                    ps.setInt(4, entry.getKey().uriId());
+                });
+    }
+
+    public Map<EndpointKey, HyperLogLog> getMergedSketches(LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        String sql = "SELECT app_id, uri_id, sketch FROM endpoint_hit_hll " +
+                "WHERE bucket_start >= :from AND bucket_start < :to";
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+            sql += " AND uri_id IN (:uriIds)";
+        }
+
+        Map<EndpointKey, HyperLogLog> merged = new HashMap<>();
+        namedJdbcTemplate.query(sql, params, rs -> {
+            EndpointKey key = new EndpointKey(rs.getInt("app_id"), rs.getInt("uri_id"));
+            HyperLogLog sketch = HyperLogLog.fromBytes(rs.getBytes("sketch"));
+            merged.merge(key, sketch, (existing, added) -> {
+                existing.merge(added);
+                return existing;
+            });
+        });
+        return merged;
+    }
+
+    public void addRawIps(Map<EndpointKey, HyperLogLog> sketches, LocalDateTime from, LocalDateTime to,
+                          boolean toInclusive, List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        String sql = "SELECT DISTINCT app_id, uri_id, ip FROM endpoint_hit " +
+                "WHERE timestamp >= :from AND timestamp " + (toInclusive ? "<=" : "<") + " :to";
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+            sql += " AND uri_id IN (:uriIds)";
+        }
+
+        namedJdbcTemplate.query(sql, params, rs -> {
+            EndpointKey key = new EndpointKey(rs.getInt("app_id"), rs.getInt("uri_id"));
+            sketches.computeIfAbsent(key, k -> new HyperLogLog(precision)).add(rs.getBytes("ip"));
+        });
+    }
+
+    public int deleteBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM endpoint_hit_hll WHERE bucket_start < ?", Timestamp.valueOf(cutoff));
+    }
+
+    public record SketchKey(LocalDateTime bucketStart, int appId, int uriId) {
+    }
+}
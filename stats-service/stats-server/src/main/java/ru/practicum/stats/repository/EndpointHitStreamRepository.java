@@ -0,0 +1,65 @@
+package ru.practicum.stats.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.dto.ViewStats;
+import ru.practicum.stats.model.TimeSlice;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Repository
+public class EndpointHitStreamRepository {
+    private final NamedParameterJdbcTemplate streamingTemplate;
+
+    public EndpointHitStreamRepository(JdbcTemplate jdbcTemplate,
+                                       @Value("${stats.stream.fetch-size:1000}") int fetchSize) {
+        // A dedicated template, so the fetch size does not leak into the regular queries
+        JdbcTemplate template = new JdbcTemplate(jdbcTemplate.getDataSource());
+        template.setFetchSize(fetchSize);
+        this.streamingTemplate = new NamedParameterJdbcTemplate(template);
+    }
+
+    public void streamStats(List<TimeSlice> slices, List<Integer> uriIds, long offset, Integer limit,
+                            Consumer<ViewStats> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String counts = EndpointHitRollupRepository.statsQuery(slices, uriIds, params);
+        stream(counts, params, offset, limit, consumer);
+    }
+
+    public void streamUniqueStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, long offset,
+                                  Integer limit, Consumer<ViewStats> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end));
+        String counts = "SELECT app_id, uri_id, COUNT(DISTINCT ip) AS hits FROM endpoint_hit " +
+                "WHERE timestamp BETWEEN :start AND :end";
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+            counts += " AND uri_id IN (:uriIds)";
+        }
+        counts += " GROUP BY app_id, uri_id";
+        stream(counts, params, offset, limit, consumer);
+    }
+
+    private void stream(String counts, MapSqlParameterSource params, long offset, Integer limit,
+                        Consumer<ViewStats> consumer) {
+        String sql = "SELECT a.name AS app, u.uri AS uri, c.hits AS hits FROM (" + counts + ") c " +
+                "JOIN endpoint_app a ON a.id = c.app_id " +
+                "JOIN endpoint_uri u ON u.id = c.uri_id " +
+                "ORDER BY c.hits DESC, c.app_id, c.uri_id OFFSET :offset";
+        params.addValue("offset", offset);
+        if (limit != null) {
+            params.addValue("limit", limit);
+            sql += " LIMIT :limit";
+        }
+        streamingTemplate.query(sql, params, rs -> {
+            consumer.accept(new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+        });
+    }
+}
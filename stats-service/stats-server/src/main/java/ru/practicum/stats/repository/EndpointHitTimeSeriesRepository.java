@@ -0,0 +1,78 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.HitCount;
+import ru.practicum.stats.model.RollupGranularity;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+@Repository
+@RequiredArgsConstructor
+public class EndpointHitTimeSeriesRepository {
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public void forEachBucket(RollupGranularity interval, LocalDateTime start, LocalDateTime end,
+                              List<Integer> uriIds, boolean fromRollup, BiConsumer<LocalDateTime, HitCount> consumer) {
+        MapSqlParameterSource params = params(start, end, uriIds);
+        String uriFilter = uriIds != null ? " AND uri_id IN (:uriIds)" : "";
+        String rawCount = "SELECT date_trunc('" + unit(interval) + "', timestamp) AS bucket_start, " +
+                "app_id, uri_id, SUM(hits) AS hits FROM endpoint_hit WHERE ";
+
+        String sql;
+        LocalDateTime wholeFrom = interval.ceil(start);
+        LocalDateTime wholeTo = interval.floor(end.plusNanos(1));
+        if (fromRollup && wholeFrom.isBefore(wholeTo)) {
+            // Whole buckets come from the rollup of the same granularity, the partial edges from raw hits
+            params.addValue("wholeFrom", Timestamp.valueOf(wholeFrom));
+            params.addValue("wholeTo", Timestamp.valueOf(wholeTo));
+            sql = "SELECT bucket_start, app_id, uri_id, hits FROM " + interval.getTable() +
+                    " WHERE bucket_start >= :wholeFrom AND bucket_start < :wholeTo" + uriFilter +
+                    " UNION ALL " + rawCount +
+                    "((timestamp >= :start AND timestamp < :wholeFrom) OR (timestamp >= :wholeTo AND timestamp <= :end))" +
+                    uriFilter + " GROUP BY 1, app_id, uri_id";
+        } else {
+            sql = rawCount + "timestamp BETWEEN :start AND :end" + uriFilter + " GROUP BY 1, app_id, uri_id";
+        }
+        query(sql, params, consumer);
+    }
+
+    public void forEachUniqueBucket(RollupGranularity interval, LocalDateTime start, LocalDateTime end,
+                                    List<Integer> uriIds, BiConsumer<LocalDateTime, HitCount> consumer) {
+        MapSqlParameterSource params = params(start, end, uriIds);
+        String sql = "SELECT date_trunc('" + unit(interval) + "', timestamp) AS bucket_start, " +
+                "app_id, uri_id, COUNT(DISTINCT ip) AS hits FROM endpoint_hit " +
+                "WHERE timestamp BETWEEN :start AND :end" +
+                (uriIds != null ? " AND uri_id IN (:uriIds)" : "") +
+                " GROUP BY 1, app_id, uri_id";
+        query(sql, params, consumer);
+    }
+
+    private void query(String sql, MapSqlParameterSource params, BiConsumer<LocalDateTime, HitCount> consumer) {
+        namedJdbcTemplate.query(sql, params, rs -> {
+            consumer.accept(rs.getTimestamp("bucket_start").toLocalDateTime(), new HitCount(
+                    rs.getInt("app_id"),
+                    rs.getInt("uri_id"),
+                    rs.getLong("hits")));
+        });
+    }
+
+    private MapSqlParameterSource params(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end));
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+        }
+        return params;
+    }
+
+    private static String unit(RollupGranularity interval) {
+        return interval.name().toLowerCase();
+    }
+}
@@ -0,0 +1,27 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+@Repository
+@RequiredArgsConstructor
+public class HitBatchKeyRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Returns false if the key was already used; a concurrent insert of the same key waits for the first one
+     * to commit or roll back.
+     */
+    public boolean claim(String batchKey) {
+        return jdbcTemplate.update("INSERT INTO hit_batch_key (batch_key, created_at) VALUES (?, ?) " +
+                "ON CONFLICT (batch_key) DO NOTHING", batchKey, Timestamp.valueOf(LocalDateTime.now())) == 1;
+    }
+
+    public int deleteOlderThan(LocalDateTime threshold) {
+        return jdbcTemplate.update("DELETE FROM hit_batch_key WHERE created_at < ?", Timestamp.valueOf(threshold));
+    }
+}
@@ -0,0 +1,47 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * {@code endpoint_hit_legacy}, the raw hits of a database created before dictionary encoding, see schema.sql.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LegacyHitRepository {
+    public static final String TABLE = "endpoint_hit_legacy";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean exists() {
+        return jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, TABLE);
+    }
+
+    public List<LegacyHit> findFirst(int limit) {
+        return jdbcTemplate.query("SELECT id, app, uri, ip, timestamp, rolled_up FROM " + TABLE +
+                        " ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new LegacyHit(
+                        rs.getLong("id"),
+                        rs.getString("app"),
+                        rs.getString("uri"),
+                        rs.getString("ip"),
+                        rs.getTimestamp("timestamp").toLocalDateTime(),
+                        rs.getBoolean("rolled_up")),
+                limit);
+    }
+
+    public int deleteUpTo(long id) {
+        return jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE id <= ?", id);
+    }
+
+    public void drop() {
+        jdbcTemplate.execute("DROP TABLE " + TABLE);
+    }
+
+    public record LegacyHit(long id, String app, String uri, String ip, LocalDateTime timestamp, boolean rolledUp) {
+    }
+}
@@ -0,0 +1,135 @@
+package ru.practicum.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.dto.ViewStats;
+import ru.practicum.stats.model.HitCount;
+import ru.practicum.stats.repository.EndpointDictionaryRepository;
+import ru.practicum.stats.repository.EndpointDictionaryRepository.Dictionary;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EndpointDictionary {
+    private final EndpointDictionaryRepository dictionaryRepository;
+
+    private final Map<String, Integer> appIds = new ConcurrentHashMap<>();
+    private final Map<Integer, String> appNames = new ConcurrentHashMap<>();
+    private final Map<String, Integer> uriIds = new ConcurrentHashMap<>();
+    private final Map<Integer, String> uris = new ConcurrentHashMap<>();
+
+    public Map<String, Integer> getOrCreateAppIds(Collection<String> names) {
+        return getOrCreate(Dictionary.APP, names, appIds, appNames);
+    }
+
+    public Map<String, Integer> getOrCreateUriIds(Collection<String> values) {
+        return getOrCreate(Dictionary.URI, values, uriIds, uris);
+    }
+
+    public int getOrCreateAppId(String name) {
+        return getOrCreateAppIds(List.of(name)).get(name);
+    }
+
+    public int getOrCreateUriId(String uri) {
+        return getOrCreateUriIds(List.of(uri)).get(uri);
+    }
+
+    public List<Integer> findUriIds(Collection<String> values) {
+        Set<String> missing = values.stream()
+                .filter(value -> !uriIds.containsKey(value))
+                .collect(Collectors.toSet());
+        if (!missing.isEmpty()) {
+            cache(dictionaryRepository.findIds(Dictionary.URI, missing), uriIds, uris);
+        }
+        return values.stream()
+                .map(uriIds::get)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    public List<ViewStats> toViewStats(List<HitCount> counts) {
+        Set<Integer> apps = new HashSet<>();
+        Set<Integer> uriSet = new HashSet<>();
+        for (HitCount count : counts) {
+            apps.add(count.appId());
+            uriSet.add(count.uriId());
+        }
+        Map<Integer, String> appLookup = resolve(Dictionary.APP, apps, appNames, appIds);
+        Map<Integer, String> uriLookup = resolve(Dictionary.URI, uriSet, uris, uriIds);
+
+        return counts.stream()
+                .map(count -> new ViewStats(appLookup.get(count.appId()), uriLookup.get(count.uriId()), count.hits()))
+                .collect(Collectors.toList());
+    }
+
+    public Map<Integer, String> findAppNames(Collection<Integer> ids) {
+        return resolve(Dictionary.APP, new HashSet<>(ids), appNames, appIds);
+    }
+
+    public Map<Integer, String> findUris(Collection<Integer> ids) {
+        return resolve(Dictionary.URI, new HashSet<>(ids), uris, uriIds);
+    }
+
+    private Map<String, Integer> getOrCreate(Dictionary dictionary, Collection<String> values,
+                                             Map<String, Integer> ids, Map<Integer, String> reverse) {
+        Map<String, Integer> result = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (String value : values) {
+            Integer id = ids.get(value);
+            if (id != null) {
+                result.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Integer> created = dictionaryRepository.getOrCreateIds(dictionary, missing);
+            cache(created, ids, reverse);
+            result.putAll(created);
+            log.debug("Interned {} new {} values", created.size(), dictionary);
+        }
+        return result;
+    }
+
+    private Map<Integer, String> resolve(Dictionary dictionary, Set<Integer> ids,
+                                         Map<Integer, String> values, Map<String, Integer> reverse) {
+        Map<Integer, String> result = new HashMap<>();
+        Set<Integer> missing = new HashSet<>();
+        for (Integer id : ids) {
+            String value = values.get(id);
+            if (value != null) {
+                result.put(id, value);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<Integer, String> loaded = dictionaryRepository.findValues(dictionary, missing);
+            loaded.forEach((id, value) -> {
+                values.put(id, value);
+                reverse.put(value, id);
+            });
+            result.putAll(loaded);
+        }
+        return result;
+    }
+
+    private void cache(Map<String, Integer> loaded, Map<String, Integer> ids, Map<Integer, String> reverse) {
+        loaded.forEach((value, id) -> {
+            ids.put(value, id);
+            reverse.put(id, value);
+        });
+    }
+}
@@ -0,0 +1,33 @@
+package ru.practicum.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.stats.repository.HitBatchKeyRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.storage.engine", havingValue = "postgres", matchIfMissing = true)
+public class HitBatchKeyMaintenanceService {
+    private final HitBatchKeyRepository batchKeyRepository;
+
+    @Value("${stats.idempotency.retention:P7D}")
+    private Duration retention;
+
+    @Scheduled(cron = "${stats.idempotency.cleanup-cron:0 15 * * * *}")
+    public void deleteExpiredKeys() {
+        try {
+            int deleted = batchKeyRepository.deleteOlderThan(LocalDateTime.now().minus(retention));
+            log.info("Deleted {} batch keys older than {}", deleted, retention);
+        } catch (RuntimeException e) {
+            log.error("Batch key cleanup failed", e);
+        }
+    }
+}
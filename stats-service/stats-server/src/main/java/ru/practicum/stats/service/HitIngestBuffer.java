@@ -0,0 +1,199 @@
+package ru.practicum.stats.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.exception.IngestOverloadedException;
+import ru.practicum.stats.model.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Slf4j
+@Component
+public class HitIngestBuffer {
+    public enum AckMode {
+        ENQUEUE,
+        COMMIT
+    }
+
+    private final HitWriter hitWriter;
+    private final boolean enabled;
+    private final AckMode ackMode;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    private final long commitTimeoutMs;
+    private final BlockingQueue<PendingHit> queue;
+
+    private final Counter enqueuedCounter;
+    private final Counter flushedCounter;
+    private final Counter droppedCounter;
+    private final Timer flushTimer;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public HitIngestBuffer(HitWriter hitWriter,
+                           MeterRegistry meterRegistry,
+                           @Value("${stats.ingest.buffer.enabled:false}") boolean enabled,
+                           @Value("${stats.ingest.buffer.ack:ENQUEUE}") AckMode ackMode,
+                           @Value("${stats.ingest.buffer.capacity:65536}") int capacity,
+                           @Value("${stats.ingest.buffer.flush-size:500}") int flushSize,
+                           @Value("${stats.ingest.buffer.flush-interval-ms:50}") long flushIntervalMs,
+                           @Value("${stats.ingest.buffer.commit-timeout-ms:5000}") long commitTimeoutMs) {
+        this.hitWriter = hitWriter;
+        this.enabled = enabled;
+        this.ackMode = ackMode;
+        this.flushSize = flushSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.commitTimeoutMs = commitTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        Gauge.builder("stats.ingest.buffer.depth", queue, BlockingQueue::size)
+                .description("Hits waiting in the ingestion buffer")
+                .register(meterRegistry);
+        this.enqueuedCounter = Counter.builder("stats.ingest.buffer.enqueued")
+                .description("Hits accepted by the ingestion buffer")
+                .register(meterRegistry);
+        this.flushedCounter = Counter.builder("stats.ingest.buffer.flushed")
+                .description("Hits committed by the ingestion buffer")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("stats.ingest.buffer.dropped")
+                .description("Hits lost because the buffer was full or the flush failed")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("stats.ingest.buffer.flush.latency")
+                .description("Time spent committing one buffered batch")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "stats-hit-flusher");
+        flusher.start();
+        log.info("Hit ingestion buffer started: ack={}, capacity={}, flushSize={}, flushIntervalMs={}",
+                ackMode, queue.remainingCapacity(), flushSize, TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos));
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        log.info("Hit ingestion buffer stopped, {} hits left unflushed", queue.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void submit(EndpointHit hit) {
+        if (ackMode == AckMode.ENQUEUE) {
+            if (!queue.offer(new PendingHit(hit, null))) {
+                droppedCounter.increment();
+                log.warn("Ingestion buffer is full, hit dropped: uriId={}", hit.getUriId());
+                return;
+            }
+            enqueuedCounter.increment();
+            return;
+        }
+
+        CompletableFuture<Void> committed = new CompletableFuture<>();
+        try {
+            if (!queue.offer(new PendingHit(hit, committed), commitTimeoutMs, TimeUnit.MILLISECONDS)) {
+                droppedCounter.increment();
+                throw new IngestOverloadedException("Ingestion buffer is full");
+            }
+            enqueuedCounter.increment();
+            committed.get(commitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IngestOverloadedException("Interrupted while waiting for hit commit");
+        } catch (TimeoutException e) {
+            throw new IngestOverloadedException("Timed out waiting for hit commit");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to persist hit", e.getCause());
+        }
+    }
+
+    private void runFlusher() {
+        List<PendingHit> batch = new ArrayList<>(flushSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingHit first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < flushSize) {
+                    queue.drainTo(batch, flushSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= flushSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingHit next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                log.warn("Hit flusher interrupted, flushing {} pending hits", batch.size() + queue.size());
+                running = false;
+                // The batch being collected has already left the queue
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingHit> batch) {
+        List<EndpointHit> hits = new ArrayList<>(batch.size());
+        for (PendingHit pending : batch) {
+            hits.add(pending.hit());
+        }
+        try {
+            flushTimer.record(() -> hitWriter.write(hits));
+            flushedCounter.increment(hits.size());
+            for (PendingHit pending : batch) {
+                if (pending.committed() != null) {
+                    pending.committed().complete(null);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to flush {} buffered hits", hits.size(), e);
+            for (PendingHit pending : batch) {
+                if (pending.committed() != null) {
+                    pending.committed().completeExceptionally(e);
+                } else {
+                    droppedCounter.increment();
+                }
+            }
+        }
+    }
+
+    private record PendingHit(EndpointHit hit, CompletableFuture<Void> committed) {
+    }
+}
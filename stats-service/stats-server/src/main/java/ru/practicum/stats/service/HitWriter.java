@@ -0,0 +1,57 @@
+package ru.practicum.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.repository.EndpointHitJdbcRepository;
+import ru.practicum.stats.repository.EndpointHitRollupRepository;
+
+import java.util.Comparator;
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HitWriter {
+    private final EndpointHitJdbcRepository jdbcRepository;
+    private final EndpointHitRollupRepository rollupRepository;
+    private final SketchWriteBuffer sketchBuffer;
+    private final TopUriTracker topUriTracker;
+    private final StatsResultCache resultCache;
+
+    @Value("${stats.rollup.enabled:true}")
+    private boolean rollupEnabled;
+
+    @Value("${stats.hll.enabled:true}")
+    private boolean hllEnabled;
+
+    @Transactional
+    public int write(List<EndpointHit> hits) {
+        int saved = jdbcRepository.saveAll(hits);
+        if (rollupEnabled && saved > 0) {
+            rollupRepository.increment(hits);
+        }
+        if (saved > 0) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    if (hllEnabled) {
+                        sketchBuffer.add(hits);
+                    }
+                    topUriTracker.record(hits);
+                    hits.stream()
+                            .map(EndpointHit::getTimestamp)
+                            .min(Comparator.naturalOrder())
+                            .ifPresent(resultCache::onHitsWritten);
+                }
+            });
+        }
+        log.debug("Persisted {} hits", saved);
+        return saved;
+    }
+}
@@ -0,0 +1,144 @@
+package ru.practicum.stats.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.repository.EndpointHitJdbcRepository;
+import ru.practicum.stats.repository.EndpointHitRollupRepository;
+import ru.practicum.stats.repository.LegacyHitRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copies the raw hits schema.sql moved to {@code endpoint_hit_legacy} into {@code endpoint_hit} in batches, each
+ * deleted from the legacy table in the same transaction, so a restart resumes where it stopped. Sketches are
+ * rebuilt from the copied hits; rollups only when the legacy database had none, otherwise schema.sql already
+ * carried them over.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "stats.storage.engine", havingValue = "postgres", matchIfMissing = true)
+public class LegacyHitMigrationService {
+    private final LegacyHitRepository legacyRepository;
+    private final EndpointHitJdbcRepository jdbcRepository;
+    private final EndpointHitRollupRepository rollupRepository;
+    private final SketchWriteBuffer sketchBuffer;
+    private final EndpointDictionary dictionary;
+    private final StatsResultCache resultCache;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stats.rollup.enabled:true}")
+    private boolean rollupEnabled;
+
+    @Value("${stats.hll.enabled:true}")
+    private boolean hllEnabled;
+
+    @Value("${stats.legacy-migration.batch-size:10000}")
+    private int batchSize;
+
+    public LegacyHitMigrationService(LegacyHitRepository legacyRepository,
+                                     EndpointHitJdbcRepository jdbcRepository,
+                                     EndpointHitRollupRepository rollupRepository,
+                                     SketchWriteBuffer sketchBuffer,
+                                     EndpointDictionary dictionary,
+                                     StatsResultCache resultCache,
+                                     PlatformTransactionManager transactionManager) {
+        this.legacyRepository = legacyRepository;
+        this.jdbcRepository = jdbcRepository;
+        this.rollupRepository = rollupRepository;
+        this.sketchBuffer = sketchBuffer;
+        this.dictionary = dictionary;
+        this.resultCache = resultCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!legacyRepository.exists()) {
+            return;
+        }
+        log.warn("Migrating hits from {}, stats for their time range are incomplete until this finishes",
+                LegacyHitRepository.TABLE);
+        long copied = 0;
+        long skipped = 0;
+        while (true) {
+            Batch batch = transactionTemplate.execute(status -> migrateBatch());
+            if (batch == null || batch.read() == 0) {
+                break;
+            }
+            copied += batch.copied();
+            skipped += batch.read() - batch.copied();
+            if (batch.earliest() != null) {
+                resultCache.onHitsWritten(batch.earliest());
+            }
+            log.info("Migrated {} legacy hits so far", copied);
+        }
+        legacyRepository.drop();
+        log.warn("Legacy hit migration finished: {} hits copied, {} skipped for an invalid ip", copied, skipped);
+    }
+
+    private Batch migrateBatch() {
+        List<LegacyHitRepository.LegacyHit> legacyHits = legacyRepository.findFirst(batchSize);
+        if (legacyHits.isEmpty()) {
+            return new Batch(0, 0, null);
+        }
+        Set<String> apps = new HashSet<>();
+        Set<String> uris = new HashSet<>();
+        for (LegacyHitRepository.LegacyHit hit : legacyHits) {
+            apps.add(hit.app());
+            uris.add(hit.uri());
+        }
+        Map<String, Integer> appIds = dictionary.getOrCreateAppIds(apps);
+        Map<String, Integer> uriIds = dictionary.getOrCreateUriIds(uris);
+
+        List<EndpointHit> hits = new ArrayList<>(legacyHits.size());
+        List<EndpointHit> notRolledUp = new ArrayList<>();
+        LocalDateTime earliest = null;
+        for (LegacyHitRepository.LegacyHit legacyHit : legacyHits) {
+            byte[] ip;
+            try {
+                ip = IpAddressCodec.encode(legacyHit.ip());
+            } catch (IllegalArgumentException e) {
+                log.debug("Skipping legacy hit {}: {}", legacyHit.id(), e.getMessage());
+                continue;
+            }
+            EndpointHit hit = EndpointHit.builder()
+                    .appId(appIds.get(legacyHit.app()))
+                    .uriId(uriIds.get(legacyHit.uri()))
+                    .ip(ip)
+                    .timestamp(legacyHit.timestamp())
+                    .build();
+            hits.add(hit);
+            if (!legacyHit.rolledUp()) {
+                notRolledUp.add(hit);
+            }
+            if (earliest == null || hit.getTimestamp().isBefore(earliest)) {
+                earliest = hit.getTimestamp();
+            }
+        }
+
+        jdbcRepository.saveAll(hits);
+        if (rollupEnabled && !notRolledUp.isEmpty()) {
+            rollupRepository.increment(notRolledUp);
+        }
+        if (hllEnabled && !hits.isEmpty()) {
+            sketchBuffer.add(hits);
+        }
+        legacyRepository.deleteUpTo(legacyHits.get(legacyHits.size() - 1).id());
+        return new Batch(legacyHits.size(), hits.size(), earliest);
+    }
+
+    private record Batch(int read, int copied, LocalDateTime earliest) {
+    }
+}
@@ -0,0 +1,162 @@
+package ru.practicum.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.stats.model.PartitionInterval;
+import ru.practicum.stats.repository.EndpointHitPartitionRepository;
+import ru.practicum.stats.repository.EndpointHitRollupRepository;
+import ru.practicum.stats.repository.EndpointHitSketchRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Keeps {@code endpoint_hit} partitioned by {@code stats.partition.interval}: creates partitions ahead of time and
+ * for history still in the default partition, and with a retention set removes older hits from the raw, rollup
+ * and sketch tables alike, so every kind of query forgets them at the same time.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.storage.engine", havingValue = "postgres", matchIfMissing = true)
+public class PartitionMaintenanceService {
+    private static final DateTimeFormatter DAY_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final EndpointHitPartitionRepository partitionRepository;
+    private final EndpointHitRollupRepository rollupRepository;
+    private final EndpointHitSketchRepository sketchRepository;
+    private final StatsResultCache resultCache;
+
+    @Value("${stats.partition.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stats.partition.interval:MONTH}")
+    private PartitionInterval interval;
+
+    @Value("${stats.partition.premake:3}")
+    private int premake;
+
+    @Value("${stats.partition.retention:0}")
+    private int retention;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${stats.partition.maintenance-cron:0 5 * * * *}")
+    public synchronized void maintain() {
+        if (!enabled) {
+            return;
+        }
+        if (!partitionRepository.isPartitioned()) {
+            log.warn("Table {} is not partitioned, skipping partition maintenance",
+                    EndpointHitPartitionRepository.PARENT_TABLE);
+            return;
+        }
+
+        try {
+            // Expired history goes first, so it is not moved into partitions of its own only to be dropped
+            if (retention > 0) {
+                applyRetention(interval.minus(interval.floor(LocalDateTime.now()), retention));
+            }
+            createPartitions();
+        } catch (RuntimeException e) {
+            log.error("Partition maintenance failed", e);
+        }
+    }
+
+    private void createPartitions() {
+        Set<String> existing = new HashSet<>(partitionRepository.findPartitionNames());
+        LocalDateTime current = interval.floor(LocalDateTime.now());
+
+        // History written before its partition existed sits in the default partition, which has no bounds
+        // to prune by, so each period of it gets its partition, oldest first
+        Optional<LocalDateTime> oldest;
+        while ((oldest = partitionRepository.findOldestDefaultTimestamp(current)).isPresent()) {
+            if (!createPartition(existing, interval.floor(oldest.get()))) {
+                log.warn("Hits from {} stay in the default partition, an existing partition overlaps their period",
+                        oldest.get());
+                break;
+            }
+        }
+
+        LocalDateTime start = current;
+        for (int i = 0; i <= premake; i++) {
+            createPartition(existing, start);
+            start = interval.next(start);
+        }
+    }
+
+    private boolean createPartition(Set<String> existing, LocalDateTime start) {
+        LocalDateTime end = interval.next(start);
+        String name = EndpointHitPartitionRepository.PARTITION_PREFIX + interval.suffix(start);
+        if (existing.contains(name) || overlapsExisting(existing, start, end)) {
+            return false;
+        }
+        int moved = partitionRepository.createPartition(name, start, end);
+        existing.add(name);
+        log.info("Created partition {} for [{}, {}), moved {} rows from default partition", name, start, end, moved);
+        return true;
+    }
+
+    private void applyRetention(LocalDateTime cutoff) {
+        int dropped = 0;
+        for (String name : partitionRepository.findPartitionNames()) {
+            LocalDateTime[] bounds = parseBounds(name);
+            if (bounds != null && !bounds[1].isAfter(cutoff)) {
+                partitionRepository.dropPartition(name);
+                dropped++;
+                log.info("Dropped partition {} for [{}, {}) by retention policy", name, bounds[0], bounds[1]);
+            }
+        }
+        int defaultRows = partitionRepository.deleteDefaultBefore(cutoff);
+        int rollupRows = rollupRepository.deleteBefore(cutoff);
+        int sketchRows = sketchRepository.deleteBefore(cutoff);
+        if (dropped > 0 || defaultRows > 0 || rollupRows > 0 || sketchRows > 0) {
+            resultCache.onHitsRemoved(cutoff);
+            log.info("Removed stats before {}: {} partitions, {} default partition rows, {} rollup rows, "
+                    + "{} sketches", cutoff, dropped, defaultRows, rollupRows, sketchRows);
+        }
+    }
+
+    private boolean overlapsExisting(Set<String> existing, LocalDateTime start, LocalDateTime end) {
+        for (String name : existing) {
+            LocalDateTime[] bounds = parseBounds(name);
+            if (bounds != null && bounds[0].isBefore(end) && start.isBefore(bounds[1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private LocalDateTime[] parseBounds(String name) {
+        String suffix = name.substring(EndpointHitPartitionRepository.PARTITION_PREFIX.length());
+        try {
+            if (suffix.length() == 8) {
+                LocalDateTime from = LocalDate.parse(suffix, DAY_SUFFIX).atStartOfDay();
+                return new LocalDateTime[]{from, PartitionInterval.DAY.next(from)};
+            }
+            if (suffix.length() == 6) {
+                LocalDateTime from = YearMonth.parse(suffix, MONTH_SUFFIX).atDay(1).atStartOfDay();
+                return new LocalDateTime[]{from, PartitionInterval.MONTH.next(from)};
+            }
+        } catch (DateTimeParseException e) {
+            log.warn("Unexpected partition name: {}", name);
+        }
+        return null;
+    }
+}
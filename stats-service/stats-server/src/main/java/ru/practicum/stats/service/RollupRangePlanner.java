@@ -0,0 +1,84 @@
+package ru.practicum.stats.service;
+
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.model.TimeSlice;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+public class RollupRangePlanner {
+
+    public List<TimeSlice> plan(LocalDateTime start, LocalDateTime end) {
+        // A bucket is usable only when its last instant is still within the inclusive end
+        return plan(start, end.plusNanos(1), end);
+    }
+
+    /**
+     * Plans {@code [start, before)}. The upper bound is compared exclusively, so no instant has to be derived
+     * from it; the JDBC driver may round such an instant back up to {@code before}.
+     */
+    public List<TimeSlice> planBefore(LocalDateTime start, LocalDateTime before) {
+        return plan(start, before, null);
+    }
+
+    private List<TimeSlice> plan(LocalDateTime start, LocalDateTime endExclusive, LocalDateTime end) {
+        List<TimeSlice> slices = new ArrayList<>();
+        LocalDateTime minuteFrom = RollupGranularity.MINUTE.ceil(start);
+        LocalDateTime minuteTo = RollupGranularity.MINUTE.floor(endExclusive);
+        if (!minuteFrom.isBefore(minuteTo)) {
+            slices.add(tail(start, endExclusive, end));
+            return slices;
+        }
+
+        addRaw(slices, start, minuteFrom);
+        planAligned(slices, RollupGranularity.MINUTE, minuteFrom, minuteTo);
+        if (minuteTo.isBefore(endExclusive)) {
+            slices.add(tail(minuteTo, endExclusive, end));
+        }
+        return slices;
+    }
+
+    private TimeSlice tail(LocalDateTime from, LocalDateTime endExclusive, LocalDateTime end) {
+        return end != null ? TimeSlice.raw(from, end, true) : TimeSlice.raw(from, endExclusive, false);
+    }
+
+    private void planAligned(List<TimeSlice> slices, RollupGranularity granularity,
+                             LocalDateTime from, LocalDateTime to) {
+        RollupGranularity coarser = coarser(granularity);
+        if (coarser != null) {
+            LocalDateTime coarseFrom = coarser.ceil(from);
+            LocalDateTime coarseTo = coarser.floor(to);
+            if (coarseFrom.isBefore(coarseTo)) {
+                addRollup(slices, granularity, from, coarseFrom);
+                planAligned(slices, coarser, coarseFrom, coarseTo);
+                addRollup(slices, granularity, coarseTo, to);
+                return;
+            }
+        }
+        addRollup(slices, granularity, from, to);
+    }
+
+    private RollupGranularity coarser(RollupGranularity granularity) {
+        return switch (granularity) {
+            case MINUTE -> RollupGranularity.HOUR;
+            case HOUR -> RollupGranularity.DAY;
+            case DAY -> null;
+        };
+    }
+
+    private void addRaw(List<TimeSlice> slices, LocalDateTime from, LocalDateTime to) {
+        if (from.isBefore(to)) {
+            slices.add(TimeSlice.raw(from, to, false));
+        }
+    }
+
+    private void addRollup(List<TimeSlice> slices, RollupGranularity granularity,
+                           LocalDateTime from, LocalDateTime to) {
+        if (from.isBefore(to)) {
+            slices.add(TimeSlice.rollup(granularity, from, to));
+        }
+    }
+}
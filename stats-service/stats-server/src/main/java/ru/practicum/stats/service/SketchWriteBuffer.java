@@ -0,0 +1,100 @@
+package ru.practicum.stats.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.repository.EndpointHitSketchRepository;
+import ru.practicum.stats.repository.EndpointHitSketchRepository.SketchKey;
+import ru.practicum.stats.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the ips of written hits into daily sketches in memory and merges them into {@code endpoint_hit_hll}
+ * every {@code stats.hll.flush-interval-ms}, so each sketch row is locked and rewritten once per interval instead
+ * of once per ingested batch. Queries add the sketches not written yet; merging is idempotent, so a sketch that is
+ * being written and is already visible in the table is not counted twice. Sketches of the last interval are lost
+ * if the process dies, the raw hits are not.
+ */
+@Slf4j
+@Component
+public class SketchWriteBuffer {
+    private final EndpointHitSketchRepository sketchRepository;
+    private final int precision;
+
+    private Map<SketchKey, HyperLogLog> pending = new HashMap<>();
+    private Map<SketchKey, HyperLogLog> flushing = Map.of();
+
+    public SketchWriteBuffer(EndpointHitSketchRepository sketchRepository,
+                             @Value("${stats.hll.precision:12}") int precision) {
+        this.sketchRepository = sketchRepository;
+        this.precision = precision;
+    }
+
+    public synchronized void add(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            SketchKey key = new SketchKey(RollupGranularity.DAY.floor(hit.getTimestamp()), hit.getAppId(),
+                    hit.getUriId());
+            pending.computeIfAbsent(key, k -> new HyperLogLog(precision)).add(hit.getIp());
+        }
+    }
+
+    /**
+     * Merges the sketches not written yet for days in [from, to) into {@code sketches}.
+     */
+    public synchronized void mergeUnwritten(Map<EndpointKey, HyperLogLog> sketches, LocalDateTime from,
+                                            LocalDateTime to, List<Integer> uriIds) {
+        for (Map<SketchKey, HyperLogLog> unwritten : List.of(pending, flushing)) {
+            unwritten.forEach((key, sketch) -> {
+                if (key.bucketStart().isBefore(from) || !key.bucketStart().isBefore(to)
+                        || (uriIds != null && !uriIds.contains(key.uriId()))) {
+                    return;
+                }
+                sketches.computeIfAbsent(new EndpointKey(key.appId(), key.uriId()), k -> new HyperLogLog(precision))
+                        .merge(sketch);
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.hll.flush-interval-ms:1000}")
+    public void flush() {
+        Map<SketchKey, HyperLogLog> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            flushing = batch;
+            pending = new HashMap<>();
+        }
+        try {
+            sketchRepository.merge(batch);
+            log.debug("Merged {} sketches into endpoint_hit_hll", batch.size());
+            synchronized (this) {
+                flushing = Map.of();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to write {} sketches, keeping them for the next flush: {}", batch.size(), e.getMessage());
+            synchronized (this) {
+                batch.forEach((key, sketch) -> pending.merge(key, sketch, (current, failed) -> {
+                    current.merge(failed);
+                    return current;
+                }));
+                flushing = Map.of();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+}
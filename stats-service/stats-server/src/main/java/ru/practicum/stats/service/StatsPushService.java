@@ -0,0 +1,361 @@
+package ru.practicum.stats.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.stats.dto.EndpointHitDto;
+import ru.practicum.stats.dto.EndpointHitErrorDto;
+import ru.practicum.stats.dto.ViewStats;
+import ru.practicum.stats.dto.ViewStatsUpdateDto;
+import ru.practicum.stats.exception.SubscriberLimitException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes view counts to subscribers over server-sent events: a {@code snapshot} of every URI under the
+ * subscriber's prefix when it connects, then {@code update} events with the new totals of URIs that received hits.
+ * The snapshot is loaded on a separate thread, so subscribing does not hold the request thread. After it, hit totals
+ * are advanced by the accepted hits themselves and only the unique counts of the changed URIs are reloaded, once per
+ * tick; with the ingestion buffer enabled they are reloaded on the next tick too, as the hits may not be written yet.
+ * URIs that got hits while a subscriber's snapshot was loading are reloaded in full for that subscriber instead, as
+ * the snapshot may or may not include those hits.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StatsPushService {
+    private static final int RELOAD_CHUNK_SIZE = 1000;
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final StatsService statsService;
+    private final HitIngestBuffer hitBuffer;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Queue<PendingHit> pending = new ConcurrentLinkedQueue<>();
+    private final ExecutorService snapshotLoader = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "stats-push-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Set<String> previouslyChanged = Set.of();
+
+    @Value("${stats.push.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stats.push.max-subscribers:100}")
+    private int maxSubscribers;
+
+    @Value("${stats.push.timeout:PT30M}")
+    private Duration timeout;
+
+    public SseEmitter subscribe(LocalDateTime start, String uriPrefix) {
+        if (!enabled) {
+            throw new SubscriberLimitException("View count push is disabled");
+        }
+        if (subscribers.size() >= maxSubscribers) {
+            throw new SubscriberLimitException("View count push has " + subscribers.size()
+                    + " subscribers, the limit is " + maxSubscribers);
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, start, uriPrefix != null ? uriPrefix : "");
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        // Registered before the snapshot is loaded, so no update after it is missed
+        subscribers.add(subscriber);
+        try {
+            snapshotLoader.execute(() -> sendSnapshot(subscriber));
+        } catch (RejectedExecutionException e) {
+            remove(subscriber);
+            throw new SubscriberLimitException("View count push is shutting down");
+        }
+        return emitter;
+    }
+
+    /**
+     * Records the accepted hits of a request for the next tick; {@code errors} are the rejected ones.
+     */
+    public void onHits(List<EndpointHitDto> hitDtos, List<EndpointHitErrorDto> errors) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Set<Integer> rejected = errors.stream()
+                .map(EndpointHitErrorDto::getIndex)
+                .collect(Collectors.toSet());
+        for (int i = 0; i < hitDtos.size(); i++) {
+            EndpointHitDto hitDto = hitDtos.get(i);
+            if (!rejected.contains(i)) {
+                pending.add(new PendingHit(new StatsKey(hitDto.getApp(), hitDto.getUri()),
+                        LocalDateTime.parse(hitDto.getTimestamp(), FORMATTER),
+                        hitDto.getCount() != null ? hitDto.getCount() : 1));
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Scheduled(fixedDelayString = "${stats.push.interval-ms:1000}")
+    public void publishChanges() {
+        List<PendingHit> hits = new ArrayList<>();
+        for (PendingHit hit = pending.poll(); hit != null; hit = pending.poll()) {
+            hits.add(hit);
+        }
+        Set<String> current = hits.stream()
+                .map(hit -> hit.key().uri())
+                .collect(Collectors.toSet());
+        Set<String> due = new HashSet<>(current);
+        if (hitBuffer.isEnabled()) {
+            due.addAll(previouslyChanged);
+        }
+        previouslyChanged = current;
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime end = LocalDateTime.now();
+        Map<LocalDateTime, List<Subscriber>> byStart = new HashMap<>();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.ready) {
+                byStart.computeIfAbsent(subscriber.start, key -> new ArrayList<>()).add(subscriber);
+            } else {
+                current.stream()
+                        .filter(uri -> uri.startsWith(subscriber.uriPrefix))
+                        .forEach(subscriber.stale::add);
+            }
+        }
+        byStart.forEach((start, group) -> {
+            Set<String> stale = new HashSet<>();
+            for (Subscriber subscriber : group) {
+                stale.addAll(subscriber.takeStale(hitBuffer.isEnabled()));
+            }
+            List<String> uris = due.stream()
+                    .filter(uri -> !stale.contains(uri))
+                    .filter(uri -> group.stream().anyMatch(subscriber -> uri.startsWith(subscriber.uriPrefix)))
+                    .toList();
+            Map<StatsKey, ViewStatsUpdateDto> reloaded;
+            Map<StatsKey, Long> uniqueHits;
+            try {
+                reloaded = stale.isEmpty() ? Map.of() : load(start, end, new ArrayList<>(stale));
+                uniqueHits = uris.isEmpty() ? Map.of() : loadUnique(start, end, uris);
+            } catch (RuntimeException e) {
+                log.warn("Failed to load {} changed URIs for subscribers from {}: {}", uris.size() + stale.size(),
+                        start, e.getMessage());
+                group.forEach(subscriber -> subscriber.stale.addAll(stale));
+                return;
+            }
+            for (Subscriber subscriber : group) {
+                subscriber.apply(hits, reloaded, uniqueHits, stale);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${stats.push.heartbeat-ms:15000}")
+    public void sendHeartbeats() {
+        // Idle connections are otherwise only noticed to be gone at the next update
+        subscribers.forEach(Subscriber::sendHeartbeat);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshotLoader.shutdownNow();
+    }
+
+    private void sendSnapshot(Subscriber subscriber) {
+        Map<StatsKey, ViewStatsUpdateDto> snapshot;
+        try {
+            snapshot = load(subscriber.start, LocalDateTime.now(), null);
+        } catch (RuntimeException e) {
+            log.warn("Failed to load the snapshot for subscriber from {}: {}", subscriber.start, e.getMessage());
+            remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return;
+        }
+        snapshot.keySet().removeIf(key -> !key.uri().startsWith(subscriber.uriPrefix));
+        subscriber.sendSnapshot(snapshot);
+        log.info("View count subscriber added: start={}, prefix={}, snapshot={}, subscribers={}",
+                subscriber.start, subscriber.uriPrefix, snapshot.size(), subscribers.size());
+    }
+
+    private Map<StatsKey, ViewStatsUpdateDto> load(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Map<StatsKey, ViewStatsUpdateDto> updates = new HashMap<>();
+        forEachChunk(uris, chunk -> {
+            for (ViewStats stats : statsService.getStats(start, end, chunk, false)) {
+                updates.put(new StatsKey(stats.getApp(), stats.getUri()), ViewStatsUpdateDto.builder()
+                        .app(stats.getApp())
+                        .uri(stats.getUri())
+                        .hits(stats.getHits())
+                        .uniqueHits(0L)
+                        .build());
+            }
+            for (ViewStats stats : statsService.getStats(start, end, chunk, true)) {
+                ViewStatsUpdateDto update = updates.get(new StatsKey(stats.getApp(), stats.getUri()));
+                if (update != null) {
+                    update.setUniqueHits(stats.getHits());
+                }
+            }
+        });
+        return updates;
+    }
+
+    private Map<StatsKey, Long> loadUnique(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Map<StatsKey, Long> uniqueHits = new HashMap<>();
+        forEachChunk(uris, chunk -> {
+            for (ViewStats stats : statsService.getStats(start, end, chunk, true)) {
+                uniqueHits.put(new StatsKey(stats.getApp(), stats.getUri()), stats.getHits());
+            }
+        });
+        return uniqueHits;
+    }
+
+    private static void forEachChunk(List<String> uris, Consumer<List<String>> action) {
+        if (uris == null) {
+            action.accept(null);
+            return;
+        }
+        for (int from = 0; from < uris.size(); from += RELOAD_CHUNK_SIZE) {
+            action.accept(uris.subList(from, Math.min(from + RELOAD_CHUNK_SIZE, uris.size())));
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            log.info("View count subscriber removed: start={}, prefix={}, subscribers={}",
+                    subscriber.start, subscriber.uriPrefix, subscribers.size());
+        }
+    }
+
+    private static ViewStatsUpdateDto copy(ViewStatsUpdateDto update) {
+        return ViewStatsUpdateDto.builder()
+                .app(update.getApp())
+                .uri(update.getUri())
+                .hits(update.getHits())
+                .uniqueHits(update.getUniqueHits())
+                .build();
+    }
+
+    private record StatsKey(String app, String uri) {
+    }
+
+    private record PendingHit(StatsKey key, LocalDateTime timestamp, long count) {
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final LocalDateTime start;
+        private final String uriPrefix;
+        // Totals last sent, only touched by the publishing thread once the snapshot is out
+        private final Map<StatsKey, ViewStatsUpdateDto> totals = new HashMap<>();
+        private final Set<String> stale = ConcurrentHashMap.newKeySet();
+        private Set<String> reloadAgain = Set.of();
+        private volatile boolean ready;
+
+        private Subscriber(SseEmitter emitter, LocalDateTime start, String uriPrefix) {
+            this.emitter = emitter;
+            this.start = start;
+            this.uriPrefix = uriPrefix;
+        }
+
+        private Set<String> takeStale(boolean reloadTwice) {
+            Set<String> current = new HashSet<>(stale);
+            stale.removeAll(current);
+            Set<String> taken = new HashSet<>(reloadAgain);
+            taken.addAll(current);
+            reloadAgain = reloadTwice ? current : Set.of();
+            return taken;
+        }
+
+        private void apply(List<PendingHit> hits, Map<StatsKey, ViewStatsUpdateDto> reloaded,
+                           Map<StatsKey, Long> uniqueHits, Set<String> reloadedUris) {
+            Set<StatsKey> changed = new LinkedHashSet<>();
+            for (PendingHit hit : hits) {
+                String uri = hit.key().uri();
+                if (uri.startsWith(uriPrefix) && !hit.timestamp().isBefore(start) && !reloadedUris.contains(uri)) {
+                    ViewStatsUpdateDto total = totals.computeIfAbsent(hit.key(), this::empty);
+                    total.setHits(total.getHits() + hit.count());
+                    changed.add(hit.key());
+                }
+            }
+            reloaded.forEach((key, update) -> {
+                if (key.uri().startsWith(uriPrefix)) {
+                    totals.put(key, copy(update));
+                    changed.add(key);
+                }
+            });
+            uniqueHits.forEach((key, count) -> {
+                if (key.uri().startsWith(uriPrefix)) {
+                    totals.computeIfAbsent(key, this::empty).setUniqueHits(count);
+                    changed.add(key);
+                }
+            });
+            if (!changed.isEmpty()) {
+                sendUpdate(changed.stream()
+                        .map(totals::get)
+                        .map(StatsPushService::copy)
+                        .toList());
+            }
+        }
+
+        private ViewStatsUpdateDto empty(StatsKey key) {
+            return ViewStatsUpdateDto.builder()
+                    .app(key.app())
+                    .uri(key.uri())
+                    .hits(0L)
+                    .uniqueHits(0L)
+                    .build();
+        }
+
+        private synchronized void sendSnapshot(Map<StatsKey, ViewStatsUpdateDto> snapshot) {
+            totals.putAll(snapshot);
+            send(SseEmitter.event().name("snapshot").data(snapshot.values().stream()
+                    .map(StatsPushService::copy)
+                    .toList(), MediaType.APPLICATION_JSON));
+            ready = true;
+        }
+
+        private synchronized void sendUpdate(List<ViewStatsUpdateDto> updates) {
+            send(SseEmitter.event().name("update").data(updates, MediaType.APPLICATION_JSON));
+        }
+
+        private synchronized void sendHeartbeat() {
+            if (ready) {
+                send(SseEmitter.event().comment("ping"));
+            }
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) {
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Failed to push to subscriber from {}: {}", start, e.getMessage());
+                remove(this);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
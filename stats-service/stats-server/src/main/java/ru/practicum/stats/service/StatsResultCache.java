@@ -0,0 +1,128 @@
+package ru.practicum.stats.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.HitCount;
+import ru.practicum.stats.model.RollupGranularity;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches stats for the closed part of a requested range, [start, boundary), where the boundary is aligned
+ * to a bucket and lies far enough in the past that new hits no longer land before it.
+ */
+@Slf4j
+@Component
+public class StatsResultCache {
+    private final boolean enabled;
+    private final RollupGranularity bucket;
+    private final Duration closeDelay;
+    private final Map<Key, List<HitCount>> entries;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter invalidationCounter;
+
+    private long generation;
+
+    public StatsResultCache(MeterRegistry meterRegistry,
+                            @Value("${stats.cache.enabled:true}") boolean enabled,
+                            @Value("${stats.cache.max-entries:1000}") int maxEntries,
+                            @Value("${stats.cache.bucket:HOUR}") RollupGranularity bucket,
+                            @Value("${stats.cache.close-delay:PT1M}") Duration closeDelay) {
+        this.enabled = enabled;
+        this.bucket = bucket;
+        this.closeDelay = closeDelay;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<HitCount>> eldest) {
+                return super.size() > maxEntries;
+            }
+        };
+
+        Gauge.builder("stats.cache.size", this, StatsResultCache::size)
+                .description("Cached historical stats results")
+                .register(meterRegistry);
+        this.hitCounter = Counter.builder("stats.cache.hits")
+                .description("Stats requests whose historical part was served from the cache")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("stats.cache.misses")
+                .description("Stats requests whose historical part had to be computed")
+                .register(meterRegistry);
+        this.invalidationCounter = Counter.builder("stats.cache.invalidations")
+                .description("Cache flushes caused by hits arriving for an already closed bucket")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public LocalDateTime boundary(LocalDateTime end) {
+        LocalDateTime closed = LocalDateTime.now().minus(closeDelay);
+        LocalDateTime endExclusive = end.plusNanos(1);
+        return bucket.floor(endExclusive.isBefore(closed) ? endExclusive : closed);
+    }
+
+    private LocalDateTime closedBoundary() {
+        return bucket.floor(LocalDateTime.now().minus(closeDelay));
+    }
+
+    public synchronized Lookup get(Key key) {
+        List<HitCount> counts = entries.get(key);
+        if (counts != null) {
+            hitCounter.increment();
+        } else {
+            missCounter.increment();
+        }
+        return new Lookup(counts, generation);
+    }
+
+    public synchronized void put(Key key, List<HitCount> counts, long lookupGeneration) {
+        // A late hit may have been written while the result was computed, then the result is already stale
+        if (lookupGeneration != generation) {
+            return;
+        }
+        entries.put(key, List.copyOf(counts));
+    }
+
+    public void onHitsWritten(LocalDateTime earliestTimestamp) {
+        // No cached or in-flight result can reach past the current closed boundary
+        if (!earliestTimestamp.isBefore(closedBoundary())) {
+            return;
+        }
+        synchronized (this) {
+            generation++;
+            int before = entries.size();
+            entries.keySet().removeIf(key -> earliestTimestamp.isBefore(key.boundary()));
+            invalidationCounter.increment();
+            log.debug("Late hit at {} invalidated {} cached stats results", earliestTimestamp,
+                    before - entries.size());
+        }
+    }
+
+    public synchronized void onHitsRemoved(LocalDateTime cutoff) {
+        generation++;
+        int before = entries.size();
+        entries.keySet().removeIf(key -> key.start().isBefore(cutoff));
+        log.debug("Retention up to {} invalidated {} cached stats results", cutoff, before - entries.size());
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    public record Key(LocalDateTime start, LocalDateTime boundary, List<Integer> uriIds, boolean unique) {
+    }
+
+    public record Lookup(List<HitCount> counts, long generation) {
+    }
+}
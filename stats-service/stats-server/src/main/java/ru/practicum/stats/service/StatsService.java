@@ -1,13 +0,0 @@
-package ru.practicum.stats.service;
-
-import ru.practicum.stats.dto.EndpointHitDto;
-import ru.practicum.stats.dto.ViewStats;
-
-import java.time.LocalDateTime;
-import java.util.List;
-
-public interface StatsService {
-    void saveHit(EndpointHitDto hitDto);
-
-    List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique);
-}
\ No newline at end of file
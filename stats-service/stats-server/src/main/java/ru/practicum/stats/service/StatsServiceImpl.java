@@ -2,38 +2,143 @@ package ru.practicum.stats.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.stats.dto.EndpointHitBatchResultDto;
 import ru.practicum.stats.dto.EndpointHitDto;
+import ru.practicum.stats.dto.TimeSeriesDto;
 import ru.practicum.stats.dto.ViewStats;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.model.HitCount;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.model.TimeSlice;
 import ru.practicum.stats.repository.EndpointHitRepository;
+import ru.practicum.stats.repository.EndpointHitRollupRepository;
+import ru.practicum.stats.repository.EndpointHitSketchRepository;
+import ru.practicum.stats.repository.EndpointHitStreamRepository;
+import ru.practicum.stats.repository.EndpointHitTimeSeriesRepository;
+import ru.practicum.stats.repository.HitBatchKeyRepository;
+import ru.practicum.stats.sketch.HyperLogLog;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "stats.storage.engine", havingValue = "postgres", matchIfMissing = true)
 @RequiredArgsConstructor
 @Transactional
 public class StatsServiceImpl implements StatsService {
     private final EndpointHitRepository repository;
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private final EndpointHitRollupRepository rollupRepository;
+    private final RollupRangePlanner rollupRangePlanner;
+    private final EndpointHitSketchRepository sketchRepository;
+    private final EndpointHitStreamRepository streamRepository;
+    private final EndpointHitTimeSeriesRepository timeSeriesRepository;
+    private final HitBatchKeyRepository batchKeyRepository;
+    private final HitWriter hitWriter;
+    private final HitIngestBuffer hitBuffer;
+    private final EndpointDictionary dictionary;
+    private final EndpointHitParser hitParser;
+    private final TopUriTracker topUriTracker;
+    private final StatsResultCache resultCache;
+    private final SketchWriteBuffer sketchBuffer;
+
+    @Value("${stats.rollup.enabled:true}")
+    private boolean rollupEnabled;
+
+    @Value("${stats.hll.enabled:true}")
+    private boolean hllEnabled;
+
+    @Value("${stats.timeseries.max-buckets:10000}")
+    private int maxTimeSeriesBuckets;
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void saveHit(EndpointHitDto hitDto) {
         log.debug("Saving hit: app={}, uri={}, ip={}, timestamp={}",
                 hitDto.getApp(), hitDto.getUri(), hitDto.getIp(), hitDto.getTimestamp());
 
-        ru.practicum.stats.model.EndpointHit entity = ru.practicum.stats.model.EndpointHit.builder()
-                .app(hitDto.getApp())
-                .uri(hitDto.getUri())
-                .ip(hitDto.getIp())
-                .timestamp(LocalDateTime.parse(hitDto.getTimestamp(), FORMATTER))
+        EndpointHitParser.ParsedHit hit = hitParser.parse(hitDto);
+        EndpointHit entity = EndpointHit.builder()
+                .appId(dictionary.getOrCreateAppId(hitDto.getApp()))
+                .uriId(dictionary.getOrCreateUriId(hitDto.getUri()))
+                .ip(hit.ip())
+                .timestamp(hit.timestamp())
+                .hits(hit.count())
                 .build();
 
-        repository.save(entity);
-        log.info("Hit saved successfully");
+        if (hitBuffer.isEnabled()) {
+            hitBuffer.submit(entity);
+            log.debug("Hit buffered");
+        } else {
+            hitWriter.write(List.of(entity));
+            log.info("Hit saved successfully");
+        }
+    }
+
+    @Override
+    public EndpointHitBatchResultDto saveHits(List<EndpointHitDto> hitDtos, String batchKey) {
+        // Claimed in the same transaction as the insert, so a failed batch can be retried with its key
+        if (!batchKeyRepository.claim(batchKey)) {
+            log.info("Batch {} of {} hits was already saved, skipping", batchKey, hitDtos.size());
+            return EndpointHitBatchResultDto.builder()
+                    .received(hitDtos.size())
+                    .saved(0)
+                    .errors(List.of())
+                    .build();
+        }
+        return saveHits(hitDtos);
+    }
+
+    @Override
+    public EndpointHitBatchResultDto saveHits(List<EndpointHitDto> hitDtos) {
+        log.debug("Saving batch of {} hits", hitDtos.size());
+        EndpointHitParser.ParsedBatch batch = hitParser.parseBatch(hitDtos);
+
+        List<EndpointHit> entities = new ArrayList<>(batch.hits().size());
+        if (!batch.hits().isEmpty()) {
+            Set<String> apps = new HashSet<>();
+            Set<String> uris = new HashSet<>();
+            for (EndpointHitParser.ParsedHit hit : batch.hits()) {
+                apps.add(hit.dto().getApp());
+                uris.add(hit.dto().getUri());
+            }
+            Map<String, Integer> appIds = dictionary.getOrCreateAppIds(apps);
+            Map<String, Integer> uriIds = dictionary.getOrCreateUriIds(uris);
+            for (EndpointHitParser.ParsedHit hit : batch.hits()) {
+                entities.add(EndpointHit.builder()
+                        .appId(appIds.get(hit.dto().getApp()))
+                        .uriId(uriIds.get(hit.dto().getUri()))
+                        .ip(hit.ip())
+                        .timestamp(hit.timestamp())
+                        .hits(hit.count())
+                        .build());
+            }
+        }
+
+        int saved = hitWriter.write(entities);
+        log.info("Batch processed: received={}, saved={}, rejected={}",
+                hitDtos.size(), saved, batch.errors().size());
+
+        return EndpointHitBatchResultDto.builder()
+                .received(hitDtos.size())
+                .saved(saved)
+                .errors(batch.errors())
+                .build();
     }
 
     @Override
@@ -43,22 +148,224 @@ public class StatsServiceImpl implements StatsService {
         log.debug("Getting stats: start={}, end={}, uris={}, unique={}",
                 start, end, uris, unique);
 
-        List<String> uriList = uris;
-        if (uriList != null && uriList.isEmpty()) {
-            uriList = null;
+        List<Integer> uriIds = null;
+        if (uris != null && !uris.isEmpty()) {
+            uriIds = dictionary.findUriIds(uris);
+            if (uriIds.isEmpty()) {
+                log.info("None of the requested uris has been hit yet");
+                return List.of();
+            }
         }
 
-        List<ViewStats> stats;
+        boolean uniqueHits = unique != null && unique;
+        LocalDateTime boundary = resultCache.isEnabled() ? resultCache.boundary(end) : start;
+        List<HitCount> counts = boundary.isAfter(start)
+                ? countHitsCached(start, end, boundary, uriIds, uniqueHits)
+                : countHits(start, end, uriIds, uniqueHits);
 
-        if (unique != null && unique) {
+        List<ViewStats> stats = dictionary.toViewStats(counts);
+
+        log.info("Returning {} stats records", stats.size());
+        return stats;
+    }
+
+    private List<HitCount> countHitsCached(LocalDateTime start, LocalDateTime end, LocalDateTime boundary,
+                                           List<Integer> uriIds, boolean unique) {
+        List<Integer> sortedUriIds = uriIds != null ? uriIds.stream().sorted().toList() : null;
+        StatsResultCache.Key key = new StatsResultCache.Key(start, boundary, sortedUriIds, unique);
+        StatsResultCache.Lookup lookup = resultCache.get(key);
+        List<HitCount> history = lookup.counts();
+        if (history == null) {
+            log.debug("Computing historical stats for [{}, {})", start, boundary);
+            history = countHitsBefore(start, boundary, uriIds, unique);
+            resultCache.put(key, history, lookup.generation());
+        }
+        if (!boundary.isBefore(end.plusNanos(1))) {
+            return history;
+        }
+
+        log.debug("Merging live tail [{}, {}]", boundary, end);
+        List<HitCount> tail = unique
+                ? repository.getStatsUniqueNotSeen(boundary, end, uriIds, start, boundary)
+                : countHits(boundary, end, uriIds, false);
+        Map<EndpointKey, Long> totals = new HashMap<>();
+        for (HitCount count : history) {
+            totals.merge(new EndpointKey(count.appId(), count.uriId()), count.hits(), Long::sum);
+        }
+        for (HitCount count : tail) {
+            totals.merge(new EndpointKey(count.appId(), count.uriId()), count.hits(), Long::sum);
+        }
+        return totals.entrySet().stream()
+                .map(entry -> new HitCount(entry.getKey().appId(), entry.getKey().uriId(), entry.getValue()))
+                .sorted(Comparator.comparing(HitCount::hits).reversed())
+                .collect(Collectors.toList());
+    }
+
+    private List<HitCount> countHitsBefore(LocalDateTime start, LocalDateTime before, List<Integer> uriIds,
+                                           boolean unique) {
+        // Exclusive, so a hit at the boundary itself is left to the live tail
+        if (unique) {
+            return repository.getStatsUniqueBefore(start, before, uriIds);
+        } else if (rollupEnabled) {
+            return rollupRepository.getStats(rollupRangePlanner.planBefore(start, before), uriIds);
+        } else {
+            return repository.getStatsBefore(start, before, uriIds);
+        }
+    }
+
+    private List<HitCount> countHits(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean unique) {
+        if (unique) {
             log.debug("Getting unique stats");
-            stats = repository.getStatsUnique(start, end, uriList);
+            return repository.getStatsUnique(start, end, uriIds);
+        } else if (rollupEnabled) {
+            log.debug("Getting non-unique stats from rollups");
+            return rollupRepository.getStats(rollupRangePlanner.plan(start, end), uriIds);
         } else {
             log.debug("Getting non-unique stats");
-            stats = repository.getStats(start, end, uriList);
+            return repository.getStats(start, end, uriIds);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ViewStats> getApproxUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        log.debug("Getting approximate unique stats: start={}, end={}, uris={}", start, end, uris);
+        if (!hllEnabled) {
+            log.debug("No sketches are written while stats.hll.enabled=false, counting unique hits exactly");
+            return getStats(start, end, uris, true);
         }
 
-        log.info("Returning {} stats records", stats.size());
+        List<Integer> uriList = null;
+        if (uris != null && !uris.isEmpty()) {
+            uriList = dictionary.findUriIds(uris);
+            if (uriList.isEmpty()) {
+                log.info("None of the requested uris has been hit yet");
+                return List.of();
+            }
+        }
+
+        LocalDateTime endExclusive = end.plusNanos(1);
+        LocalDateTime dayFrom = RollupGranularity.DAY.ceil(start);
+        LocalDateTime dayTo = RollupGranularity.DAY.floor(endExclusive);
+
+        Map<EndpointKey, HyperLogLog> sketches;
+        if (dayFrom.isBefore(dayTo)) {
+            sketches = sketchRepository.getMergedSketches(dayFrom, dayTo, uriList);
+            sketchBuffer.mergeUnwritten(sketches, dayFrom, dayTo, uriList);
+            if (start.isBefore(dayFrom)) {
+                sketchRepository.addRawIps(sketches, start, dayFrom, false, uriList);
+            }
+            if (dayTo.isBefore(endExclusive)) {
+                sketchRepository.addRawIps(sketches, dayTo, end, true, uriList);
+            }
+        } else {
+            sketches = new HashMap<>();
+            sketchRepository.addRawIps(sketches, start, end, true, uriList);
+        }
+
+        List<ViewStats> stats = dictionary.toViewStats(sketches.entrySet().stream()
+                .map(entry -> new HitCount(entry.getKey().appId(), entry.getKey().uriId(),
+                        entry.getValue().estimate()))
+                .sorted(Comparator.comparing(HitCount::hits).reversed())
+                .collect(Collectors.toList()));
+
+        log.info("Returning {} approximate unique stats records", stats.size());
+        return stats;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ViewStats> getTopStats(LocalDateTime start, LocalDateTime end, int k, Boolean unique, boolean exact) {
+        log.debug("Getting top {} stats: start={}, end={}, unique={}, exact={}", k, start, end, unique, exact);
+
+        boolean uniqueHits = unique != null && unique;
+        List<ViewStats> stats;
+        if (!exact && !uniqueHits && topUriTracker.covers(start, k)) {
+            log.debug("Getting top stats from the in-memory sketches");
+            // The sketches hold whole hours, the partial hours at the edges of the range are counted exactly
+            LocalDateTime from = RollupGranularity.HOUR.ceil(start);
+            LocalDateTime to = RollupGranularity.HOUR.floor(end);
+            List<TimeSlice> edges = new ArrayList<>(2);
+            if (from.isBefore(to)) {
+                if (start.isBefore(from)) {
+                    edges.add(TimeSlice.raw(start, from, false));
+                }
+                edges.add(TimeSlice.raw(to, end, true));
+            } else {
+                edges.add(TimeSlice.raw(start, end, true));
+            }
+            List<HitCount> edgeCounts = rollupRepository.getStats(edges, null);
+            stats = dictionary.toViewStats(topUriTracker.top(from, to, edgeCounts, k));
+        } else {
+            log.debug("Getting exact top stats");
+            stats = new ArrayList<>(k);
+            streamStats(start, end, null, uniqueHits, 0, k, stats::add);
+        }
+
+        log.info("Returning {} top stats records", stats.size());
         return stats;
     }
-}
\ No newline at end of file
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TimeSeriesDto> getTimeSeries(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                             RollupGranularity interval, Boolean unique) {
+        log.debug("Getting time series: start={}, end={}, uris={}, interval={}, unique={}",
+                start, end, uris, interval, unique);
+
+        TimeSeriesBuilder builder = new TimeSeriesBuilder(interval, start, end, maxTimeSeriesBuckets);
+
+        List<Integer> uriIds = null;
+        if (uris != null && !uris.isEmpty()) {
+            uriIds = dictionary.findUriIds(uris);
+            if (uriIds.isEmpty()) {
+                log.info("None of the requested uris has been hit yet");
+                return List.of();
+            }
+        }
+
+        BiConsumer<LocalDateTime, HitCount> consumer = (bucketStart, count) ->
+                builder.add(new EndpointKey(count.appId(), count.uriId()), bucketStart, count.hits());
+        if (unique != null && unique) {
+            timeSeriesRepository.forEachUniqueBucket(interval, start, end, uriIds, consumer);
+        } else {
+            timeSeriesRepository.forEachBucket(interval, start, end, uriIds, rollupEnabled, consumer);
+        }
+
+        Map<Integer, String> appNames = dictionary.findAppNames(builder.keys().stream()
+                .map(EndpointKey::appId)
+                .collect(Collectors.toSet()));
+        Map<Integer, String> uriNames = dictionary.findUris(builder.keys().stream()
+                .map(EndpointKey::uriId)
+                .collect(Collectors.toSet()));
+        List<TimeSeriesDto> series = builder.build(appNames::get, uriNames::get);
+
+        log.info("Returning {} time series", series.size());
+        return series;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique,
+                            long offset, Integer limit, Consumer<ViewStats> consumer) {
+        log.debug("Streaming stats: start={}, end={}, uris={}, unique={}, offset={}, limit={}",
+                start, end, uris, unique, offset, limit);
+
+        List<Integer> uriIds = null;
+        if (uris != null && !uris.isEmpty()) {
+            uriIds = dictionary.findUriIds(uris);
+            if (uriIds.isEmpty()) {
+                log.info("None of the requested uris has been hit yet");
+                return;
+            }
+        }
+
+        if (unique != null && unique) {
+            streamRepository.streamUniqueStats(start, end, uriIds, offset, limit, consumer);
+        } else if (rollupEnabled) {
+            streamRepository.streamStats(rollupRangePlanner.plan(start, end), uriIds, offset, limit, consumer);
+        } else {
+            streamRepository.streamStats(List.of(TimeSlice.raw(start, end, true)), uriIds, offset, limit, consumer);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ru.practicum.stats.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.HitCount;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.repository.EndpointHitRollupRepository;
+import ru.practicum.stats.sketch.HeavyHitters;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+/**
+ * Heavy-hitter sketches of the hits per hour, for approximate top URIs without a query. The sketches are held in
+ * memory by each stats-server instance: they are rebuilt from the hourly rollups on startup and after that only see
+ * hits written through this instance, so with several instances {@code exact=true} is the way to a complete top.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TopUriTracker {
+    private final EndpointHitRollupRepository rollupRepository;
+    private final NavigableMap<LocalDateTime, HeavyHitters> buckets = new ConcurrentSkipListMap<>();
+    private volatile LocalDateTime horizon = LocalDateTime.MAX;
+
+    @Value("${stats.topk.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stats.topk.depth:4}")
+    private int depth;
+
+    @Value("${stats.topk.width:2048}")
+    private int width;
+
+    @Value("${stats.topk.capacity:200}")
+    private int capacity;
+
+    @Value("${stats.topk.retention:P7D}")
+    private Duration retention;
+
+    @Value("${stats.rollup.enabled:true}")
+    private boolean rollupEnabled;
+
+    @PostConstruct
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime from = RollupGranularity.HOUR.floor(LocalDateTime.now().minus(retention));
+        long[] rows = new long[1];
+        rollupRepository.forEachHourlyCount(from, rollupEnabled, (bucketStart, count) -> {
+            bucket(bucketStart).add(key(count.appId(), count.uriId()), count.hits());
+            rows[0]++;
+        });
+        horizon = from;
+        log.info("Top URI tracker warmed up from {}: {} hourly counts in {} buckets", from, rows[0], buckets.size());
+    }
+
+    public void record(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime currentHorizon = horizon;
+        for (EndpointHit hit : hits) {
+            LocalDateTime bucketStart = RollupGranularity.HOUR.floor(hit.getTimestamp());
+            if (!bucketStart.isBefore(currentHorizon)) {
+                bucket(bucketStart).add(key(hit.getAppId(), hit.getUriId()), hit.getHits());
+            }
+        }
+        evictExpired();
+    }
+
+    public boolean covers(LocalDateTime start, int k) {
+        return enabled && k <= capacity && !start.isBefore(horizon);
+    }
+
+    /**
+     * Top {@code k} by the sketches of the whole hours in [from, to) plus the exact counts of the rest of the
+     * requested range.
+     */
+    public List<HitCount> top(LocalDateTime from, LocalDateTime to, List<HitCount> edgeCounts, int k) {
+        Map<LocalDateTime, HeavyHitters> range = from.isBefore(to) ? buckets.subMap(from, true, to, false) : Map.of();
+        Map<Long, Long> totals = new HashMap<>();
+        for (HeavyHitters bucket : range.values()) {
+            for (Long key : bucket.candidates()) {
+                totals.putIfAbsent(key, 0L);
+            }
+        }
+        for (HitCount count : edgeCounts) {
+            totals.putIfAbsent(key(count.appId(), count.uriId()), 0L);
+        }
+        for (Map.Entry<Long, Long> entry : totals.entrySet()) {
+            long total = 0;
+            for (HeavyHitters bucket : range.values()) {
+                total += bucket.estimate(entry.getKey());
+            }
+            entry.setValue(total);
+        }
+        for (HitCount count : edgeCounts) {
+            totals.merge(key(count.appId(), count.uriId()), count.hits(), Long::sum);
+        }
+
+        return totals.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(k)
+                .map(entry -> new HitCount((int) (entry.getKey() >>> 32), (int) (long) entry.getKey(),
+                        entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    private HeavyHitters bucket(LocalDateTime bucketStart) {
+        return buckets.computeIfAbsent(bucketStart, b -> new HeavyHitters(depth, width, capacity));
+    }
+
+    private void evictExpired() {
+        LocalDateTime newHorizon = RollupGranularity.HOUR.floor(LocalDateTime.now().minus(retention));
+        if (newHorizon.isAfter(horizon)) {
+            horizon = newHorizon;
+            buckets.headMap(newHorizon).clear();
+            log.debug("Evicted top URI buckets before {}", newHorizon);
+        }
+    }
+
+    private static long key(int appId, int uriId) {
+        return ((long) appId << 32) | (uriId & 0xffffffffL);
+    }
+}
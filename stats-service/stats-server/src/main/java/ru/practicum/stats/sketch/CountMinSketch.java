@@ -0,0 +1,38 @@
+package ru.practicum.stats.sketch;
+
+public class CountMinSketch {
+    private final int depth;
+    private final int width;
+    private final long[] counters;
+
+    public CountMinSketch(int depth, int width) {
+        if (depth <= 0 || width <= 0) {
+            throw new IllegalArgumentException("Count-Min sketch depth and width must be positive");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counters = new long[depth * width];
+    }
+
+    public long add(long key, long count) {
+        long h1 = Hashing.mix(key);
+        long h2 = Hashing.mix(h1 ^ 0x9e3779b97f4a7c15L);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + Math.floorMod(h1 + row * h2, width);
+            counters[index] += count;
+            estimate = Math.min(estimate, counters[index]);
+        }
+        return estimate;
+    }
+
+    public long estimate(long key) {
+        long h1 = Hashing.mix(key);
+        long h2 = Hashing.mix(h1 ^ 0x9e3779b97f4a7c15L);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[row * width + Math.floorMod(h1 + row * h2, width)]);
+        }
+        return estimate;
+    }
+}
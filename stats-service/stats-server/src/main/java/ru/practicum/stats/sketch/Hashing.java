@@ -0,0 +1,25 @@
+package ru.practicum.stats.sketch;
+
+final class Hashing {
+    private Hashing() {
+    }
+
+    static long fnv1a(byte[] data) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : data) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    static long mix(long h) {
+        // MurmurHash3 finalizer, spreads the input bits over the whole word
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
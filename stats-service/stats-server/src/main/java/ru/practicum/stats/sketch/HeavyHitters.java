@@ -0,0 +1,57 @@
+package ru.practicum.stats.sketch;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Count-Min sketch together with a bounded set of candidate keys whose estimated counts are the largest seen so far.
+ */
+public class HeavyHitters {
+    private final CountMinSketch sketch;
+    private final int capacity;
+    private final Map<Long, Long> candidates = new HashMap<>();
+    private long minCandidate;
+
+    public HeavyHitters(int depth, int width, int capacity) {
+        this.sketch = new CountMinSketch(depth, width);
+        this.capacity = capacity;
+    }
+
+    public synchronized void add(long key, long count) {
+        long estimate = sketch.add(key, count);
+        if (candidates.containsKey(key) || candidates.size() < capacity) {
+            candidates.put(key, estimate);
+            return;
+        }
+        // Estimates only grow, so the cached minimum is a lower bound of the real one
+        if (estimate <= minCandidate) {
+            return;
+        }
+        long minKey = 0;
+        long minValue = Long.MAX_VALUE;
+        for (Map.Entry<Long, Long> entry : candidates.entrySet()) {
+            if (entry.getValue() < minValue) {
+                minKey = entry.getKey();
+                minValue = entry.getValue();
+            }
+        }
+        if (estimate > minValue) {
+            candidates.remove(minKey);
+            candidates.put(key, estimate);
+            minValue = estimate;
+            for (long value : candidates.values()) {
+                minValue = Math.min(minValue, value);
+            }
+        }
+        minCandidate = minValue;
+    }
+
+    public synchronized long estimate(long key) {
+        return sketch.estimate(key);
+    }
+
+    public synchronized Set<Long> candidates() {
+        return Set.copyOf(candidates.keySet());
+    }
+}
@@ -0,0 +1,96 @@
+package ru.practicum.stats.sketch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class HyperLogLog {
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 18");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        int precision = Integer.numberOfTrailingZeros(bytes.length);
+        if (bytes.length != 1 << precision) {
+            throw new IllegalArgumentException("Invalid HyperLogLog sketch size: " + bytes.length);
+        }
+        return new HyperLogLog(precision, Arrays.copyOf(bytes, bytes.length));
+    }
+
+    public byte[] toBytes() {
+        return Arrays.copyOf(registers, registers.length);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void add(String value) {
+        addHash(hash(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public void add(byte[] value) {
+        addHash(hash(value));
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog sketches of different precision");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long rest = hash << precision;
+        byte rank = (byte) Math.min(Long.numberOfLeadingZeros(rest) + 1, 64 - precision + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+
+    static long hash(byte[] data) {
+        return Hashing.mix(Hashing.fnv1a(data));
+    }
+}
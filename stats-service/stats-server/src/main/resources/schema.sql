@@ -1,9 +1,130 @@
-DROP TABLE IF EXISTS endpoint_hit CASCADE;
-
-CREATE TABLE endpoint_hit (
-    id BIGSERIAL PRIMARY KEY,
-    app VARCHAR(255) NOT NULL,
-    uri VARCHAR(255) NOT NULL,
-    ip VARCHAR(50) NOT NULL,
-    timestamp TIMESTAMP NOT NULL
-);
\ No newline at end of file
+CREATE TABLE IF NOT EXISTS endpoint_app (
+    id SERIAL PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS endpoint_uri (
+    id SERIAL PRIMARY KEY,
+    uri VARCHAR(255) NOT NULL UNIQUE
+);
+
+-- Databases created before app, uri and ip were dictionary-encoded keep them as text. Those tables are
+-- moved aside here: rollups are re-keyed through the dictionaries and copied back at the end of this script,
+-- raw hits are copied by LegacyHitMigrationService, and HLL sketches are rebuilt from them.
+DO '
+DECLARE
+    legacy_table TEXT;
+    rolled_up BOOLEAN;
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = current_schema()
+               AND table_name = ''endpoint_hit'' AND column_name = ''app'') THEN
+        rolled_up := EXISTS (SELECT 1 FROM information_schema.tables WHERE table_schema = current_schema()
+                             AND table_name = ''endpoint_hit_rollup_minute'');
+        INSERT INTO endpoint_app (name) SELECT DISTINCT app FROM endpoint_hit ON CONFLICT (name) DO NOTHING;
+        INSERT INTO endpoint_uri (uri) SELECT DISTINCT uri FROM endpoint_hit ON CONFLICT (uri) DO NOTHING;
+        EXECUTE format(''CREATE TABLE endpoint_hit_legacy AS ''
+                || ''SELECT id, app, uri, ip, timestamp, %L::BOOLEAN AS rolled_up FROM endpoint_hit'', rolled_up);
+        ALTER TABLE endpoint_hit_legacy ADD PRIMARY KEY (id);
+        DROP TABLE endpoint_hit CASCADE;
+        RAISE NOTICE ''Moved endpoint_hit with text columns to endpoint_hit_legacy'';
+    END IF;
+    FOREACH legacy_table IN ARRAY ARRAY[''endpoint_hit_rollup_minute'', ''endpoint_hit_rollup_hour'',
+                                        ''endpoint_hit_rollup_day''] LOOP
+        IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = current_schema()
+                   AND table_name = legacy_table AND column_name = ''app'') THEN
+            EXECUTE format(''INSERT INTO endpoint_app (name) SELECT DISTINCT app FROM %I ''
+                    || ''ON CONFLICT (name) DO NOTHING'', legacy_table);
+            EXECUTE format(''INSERT INTO endpoint_uri (uri) SELECT DISTINCT uri FROM %I ''
+                    || ''ON CONFLICT (uri) DO NOTHING'', legacy_table);
+            EXECUTE format(''CREATE TABLE %I AS SELECT r.bucket_start, a.id AS app_id, u.id AS uri_id, r.hits ''
+                    || ''FROM %I r JOIN endpoint_app a ON a.name = r.app JOIN endpoint_uri u ON u.uri = r.uri'',
+                    legacy_table || ''_legacy'', legacy_table);
+            EXECUTE format(''DROP TABLE %I'', legacy_table);
+        END IF;
+    END LOOP;
+    IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = current_schema()
+               AND table_name = ''endpoint_hit_hll'' AND column_name = ''app'') THEN
+        DROP TABLE endpoint_hit_hll;
+    END IF;
+END';
+
+CREATE TABLE IF NOT EXISTS endpoint_hit (
+    id BIGSERIAL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    ip BYTEA NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    hits INTEGER NOT NULL DEFAULT 1,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE TABLE IF NOT EXISTS endpoint_hit_default PARTITION OF endpoint_hit DEFAULT;
+
+ALTER TABLE endpoint_hit ADD COLUMN IF NOT EXISTS hits INTEGER NOT NULL DEFAULT 1;
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hit_timestamp_uri_id ON endpoint_hit (timestamp, uri_id);
+CREATE INDEX IF NOT EXISTS idx_endpoint_hit_uri_id_ip ON endpoint_hit (uri_id, ip, timestamp);
+
+CREATE TABLE IF NOT EXISTS endpoint_hit_rollup_minute (
+    bucket_start TIMESTAMP NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (bucket_start, app_id, uri_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hit_rollup_minute_uri ON endpoint_hit_rollup_minute (uri_id, bucket_start);
+
+CREATE TABLE IF NOT EXISTS endpoint_hit_rollup_hour (
+    bucket_start TIMESTAMP NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (bucket_start, app_id, uri_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hit_rollup_hour_uri ON endpoint_hit_rollup_hour (uri_id, bucket_start);
+
+CREATE TABLE IF NOT EXISTS endpoint_hit_rollup_day (
+    bucket_start TIMESTAMP NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (bucket_start, app_id, uri_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hit_rollup_day_uri ON endpoint_hit_rollup_day (uri_id, bucket_start);
+
+CREATE TABLE IF NOT EXISTS endpoint_hit_hll (
+    bucket_start TIMESTAMP NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    sketch BYTEA NOT NULL,
+    PRIMARY KEY (bucket_start, app_id, uri_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hit_hll_uri ON endpoint_hit_hll (uri_id, bucket_start);
+
+CREATE TABLE IF NOT EXISTS hit_batch_key (
+    batch_key VARCHAR(128) PRIMARY KEY,
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_hit_batch_key_created_at ON hit_batch_key (created_at);
+
+DO '
+DECLARE
+    legacy_table TEXT;
+BEGIN
+    FOREACH legacy_table IN ARRAY ARRAY[''endpoint_hit_rollup_minute'', ''endpoint_hit_rollup_hour'',
+                                        ''endpoint_hit_rollup_day''] LOOP
+        IF EXISTS (SELECT 1 FROM information_schema.tables WHERE table_schema = current_schema()
+                   AND table_name = legacy_table || ''_legacy'') THEN
+            EXECUTE format(''INSERT INTO %I (bucket_start, app_id, uri_id, hits) ''
+                    || ''SELECT bucket_start, app_id, uri_id, hits FROM %I ''
+                    || ''ON CONFLICT (bucket_start, app_id, uri_id) DO UPDATE SET hits = %I.hits + EXCLUDED.hits'',
+                    legacy_table, legacy_table || ''_legacy'', legacy_table);
+            EXECUTE format(''DROP TABLE %I'', legacy_table || ''_legacy'');
+        END IF;
+    END LOOP;
+END';
@@ -0,0 +1,145 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.stats.dto.ViewStats;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.HitCount;
+import ru.practicum.stats.repository.EndpointHitRepository;
+import ru.practicum.stats.repository.EndpointHitRollupRepository;
+import ru.practicum.stats.repository.EndpointHitSketchRepository;
+import ru.practicum.stats.repository.EndpointHitStreamRepository;
+import ru.practicum.stats.repository.EndpointHitTimeSeriesRepository;
+import ru.practicum.stats.repository.HitBatchKeyRepository;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ApproxUniqueStatsTest {
+    // stats.hll.precision
+    private static final int PRECISION = 12;
+    private static final int DAYS = 7;
+    private static final int URIS = 3;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime END = START.plusDays(DAYS).minusNanos(1);
+    // Three standard errors of the estimate for this precision
+    private static final double MAX_RELATIVE_ERROR = 3 * 1.04 / Math.sqrt(1 << PRECISION);
+
+    private final List<EndpointHit> hits = new ArrayList<>();
+    private StatsServiceImpl service;
+    private SketchWriteBuffer sketchBuffer;
+
+    @BeforeEach
+    void setUp() {
+        EndpointHitRepository repository = mock(EndpointHitRepository.class);
+        when(repository.getStatsUnique(any(), any(), isNull()))
+                .thenAnswer(invocation -> countDistinctIps(invocation.getArgument(0), invocation.getArgument(1)));
+
+        // Nothing is flushed, so every sketch is still in the write buffer when the stats are read
+        EndpointHitSketchRepository sketchRepository = mock(EndpointHitSketchRepository.class);
+        when(sketchRepository.getMergedSketches(any(), any(), isNull())).thenAnswer(invocation -> new HashMap<>());
+        sketchBuffer = new SketchWriteBuffer(sketchRepository, PRECISION);
+
+        EndpointDictionary dictionary = mock(EndpointDictionary.class);
+        when(dictionary.toViewStats(anyList())).thenAnswer(invocation -> invocation.<List<HitCount>>getArgument(0)
+                .stream()
+                .map(count -> new ViewStats("app-" + count.appId(), "/events/" + count.uriId(), count.hits()))
+                .collect(Collectors.toList()));
+
+        service = new StatsServiceImpl(repository, mock(EndpointHitRollupRepository.class),
+                mock(RollupRangePlanner.class), sketchRepository, mock(EndpointHitStreamRepository.class),
+                mock(EndpointHitTimeSeriesRepository.class), mock(HitBatchKeyRepository.class),
+                mock(HitWriter.class), mock(HitIngestBuffer.class), dictionary, mock(EndpointHitParser.class),
+                mock(TopUriTracker.class), mock(StatsResultCache.class), sketchBuffer);
+        ReflectionTestUtils.setField(service, "hllEnabled", true);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {50, 500, 5_000, 50_000})
+    void estimateOfMergedDailySketchesStaysWithinBoundOfExactCount(int distinctIps) {
+        // Every ip visits at least once and repeat visits land on other days, so the daily sketches overlap
+        Random random = new Random(distinctIps);
+        for (int i = 0; i < distinctIps; i++) {
+            byte[] ip = IpAddressCodec.encode(ip(i));
+            int visits = 1 + random.nextInt(3);
+            for (int visit = 0; visit < visits; visit++) {
+                hits.add(EndpointHit.builder()
+                        .appId(1)
+                        .uriId(1 + random.nextInt(URIS))
+                        .ip(ip)
+                        .timestamp(START.plusDays(random.nextInt(DAYS)).plusMinutes(random.nextInt(24 * 60)))
+                        .build());
+            }
+        }
+        sketchBuffer.add(hits);
+
+        Map<String, Long> exact = byUri(service.getStats(START, END, null, true));
+        Map<String, Long> approx = byUri(service.getApproxUniqueStats(START, END, null));
+
+        assertThat(approx.keySet()).isEqualTo(exact.keySet());
+        exact.forEach((uri, count) -> assertThat(Math.abs(approx.get(uri) - count) / (double) count)
+                .as(uri)
+                .isLessThanOrEqualTo(MAX_RELATIVE_ERROR));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100})
+    void countsExactlyWhenSketchesAreDisabled(int distinctIps) {
+        for (int i = 0; i < distinctIps; i++) {
+            hits.add(EndpointHit.builder()
+                    .appId(1)
+                    .uriId(1)
+                    .ip(IpAddressCodec.encode(ip(i)))
+                    .timestamp(START.plusHours(i % 48))
+                    .build());
+        }
+        ReflectionTestUtils.setField(service, "hllEnabled", false);
+
+        assertThat(service.getApproxUniqueStats(START, END, null))
+                .isEqualTo(service.getStats(START, END, null, true));
+    }
+
+    // What getStatsUnique counts: distinct ip values per app and uri with the timestamp in [start, end]
+    private List<HitCount> countDistinctIps(LocalDateTime start, LocalDateTime end) {
+        Map<List<Integer>, Set<ByteBuffer>> ips = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            if (!hit.getTimestamp().isBefore(start) && !hit.getTimestamp().isAfter(end)) {
+                ips.computeIfAbsent(List.of(hit.getAppId(), hit.getUriId()), k -> new HashSet<>())
+                        .add(ByteBuffer.wrap(hit.getIp()));
+            }
+        }
+        return ips.entrySet().stream()
+                .map(entry -> new HitCount(entry.getKey().get(0), entry.getKey().get(1),
+                        (long) entry.getValue().size()))
+                .collect(Collectors.toList());
+    }
+
+    private static Map<String, Long> byUri(List<ViewStats> stats) {
+        return stats.stream().collect(Collectors.toMap(ViewStats::getUri, ViewStats::getHits));
+    }
+
+    private static String ip(int i) {
+        // A tenth of the visitors come over IPv6
+        if (i % 10 == 9) {
+            return String.format("2001:db8::%x:%x", i >>> 16, i & 0xffff);
+        }
+        return "10." + (i >>> 16 & 0xff) + "." + (i >>> 8 & 0xff) + "." + (i & 0xff);
+    }
+}
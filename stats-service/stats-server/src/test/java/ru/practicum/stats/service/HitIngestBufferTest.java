@@ -0,0 +1,55 @@
+package ru.practicum.stats.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.practicum.stats.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class HitIngestBufferTest {
+    private static final int HITS = 3;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void interruptedFlusherWritesTheBatchItWasCollecting() throws InterruptedException {
+        HitWriter hitWriter = mock(HitWriter.class);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // A long flush interval keeps the flusher waiting for more hits with a partial batch
+        HitIngestBuffer buffer = new HitIngestBuffer(hitWriter, meterRegistry, true,
+                HitIngestBuffer.AckMode.ENQUEUE, 100, 100, 60_000, 5_000);
+        buffer.start();
+        for (int i = 0; i < HITS; i++) {
+            buffer.submit(EndpointHit.builder()
+                    .appId(1)
+                    .uriId(i)
+                    .ip(new byte[]{10, 0, 0, 1})
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+        while (meterRegistry.get("stats.ingest.buffer.depth").gauge().value() > 0) {
+            Thread.sleep(10);
+        }
+
+        flusherThread().interrupt();
+
+        ArgumentCaptor<List<EndpointHit>> written = ArgumentCaptor.forClass(List.class);
+        verify(hitWriter, timeout(5_000)).write(written.capture());
+        assertThat(written.getValue()).hasSize(HITS);
+        buffer.stop();
+    }
+
+    private static Thread flusherThread() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("stats-hit-flusher"))
+                .findFirst()
+                .orElseThrow();
+    }
+}
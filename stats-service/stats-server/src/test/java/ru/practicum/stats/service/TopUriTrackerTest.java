@@ -0,0 +1,81 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.HitCount;
+import ru.practicum.stats.repository.EndpointHitRollupRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class TopUriTrackerTest {
+    private static final LocalDateTime HOUR = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(5);
+
+    private TopUriTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new TopUriTracker(mock(EndpointHitRollupRepository.class));
+        ReflectionTestUtils.setField(tracker, "enabled", true);
+        ReflectionTestUtils.setField(tracker, "depth", 4);
+        ReflectionTestUtils.setField(tracker, "width", 2048);
+        ReflectionTestUtils.setField(tracker, "capacity", 200);
+        ReflectionTestUtils.setField(tracker, "retention", Duration.ofDays(7));
+        ReflectionTestUtils.setField(tracker, "rollupEnabled", true);
+        tracker.warmUp();
+    }
+
+    @Test
+    void countsOnlyTheHoursInsideTheRange() {
+        List<EndpointHit> hits = new ArrayList<>();
+        hits.addAll(hits(1, HOUR.minusMinutes(30), 50));
+        hits.addAll(hits(2, HOUR.plusMinutes(10), 3));
+        hits.addAll(hits(2, HOUR.plusHours(1).plusMinutes(10), 2));
+        hits.addAll(hits(3, HOUR.plusHours(2).plusMinutes(10), 40));
+        tracker.record(hits);
+
+        List<HitCount> top = tracker.top(HOUR, HOUR.plusHours(2), List.of(), 10);
+
+        assertThat(top).containsExactly(new HitCount(1, 2, 5L));
+    }
+
+    @Test
+    void addsEdgeCountsToTheSketchEstimates() {
+        tracker.record(hits(2, HOUR.plusMinutes(10), 3));
+
+        List<HitCount> top = tracker.top(HOUR, HOUR.plusHours(1),
+                List.of(new HitCount(1, 2, 4L), new HitCount(1, 7, 1L)), 10);
+
+        assertThat(top).containsExactly(new HitCount(1, 2, 7L), new HitCount(1, 7, 1L));
+    }
+
+    @Test
+    void rangeWithinOneHourUsesOnlyEdgeCounts() {
+        tracker.record(hits(2, HOUR.plusMinutes(10), 3));
+
+        List<HitCount> top = tracker.top(HOUR.plusHours(1), HOUR, List.of(new HitCount(1, 2, 1L)), 10);
+
+        assertThat(top).containsExactly(new HitCount(1, 2, 1L));
+    }
+
+    private static List<EndpointHit> hits(int uriId, LocalDateTime timestamp, int count) {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            hits.add(EndpointHit.builder()
+                    .appId(1)
+                    .uriId(uriId)
+                    .ip(new byte[]{10, 0, 0, (byte) i})
+                    .timestamp(timestamp)
+                    .build());
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,72 @@
+package ru.practicum.stats.sketch;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.practicum.stats.service.IpAddressCodec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HyperLogLogTest {
+    // stats.hll.precision
+    private static final int PRECISION = 12;
+    private static final int DAYS = 7;
+    // Three standard errors of the estimate for this precision
+    private static final double MAX_RELATIVE_ERROR = 3 * 1.04 / Math.sqrt(1 << PRECISION);
+
+    @ParameterizedTest
+    @ValueSource(ints = {50, 500, 5_000, 50_000, 200_000})
+    void estimateOfMergedDailySketchesStaysWithinBound(int distinctIps) {
+        // Every ip visits at least once and repeat visits land on other days, like the daily sketches of one uri
+        Random random = new Random(distinctIps);
+        List<HyperLogLog> daily = new ArrayList<>();
+        for (int day = 0; day < DAYS; day++) {
+            daily.add(new HyperLogLog(PRECISION));
+        }
+        // Distinct stored ip values, as COUNT(DISTINCT ip) sees them
+        Set<ByteBuffer> ips = new HashSet<>();
+        for (int i = 0; i < distinctIps; i++) {
+            byte[] ip = IpAddressCodec.encode(ip(i));
+            ips.add(ByteBuffer.wrap(ip));
+            int visits = 1 + random.nextInt(3);
+            for (int visit = 0; visit < visits; visit++) {
+                daily.get(random.nextInt(DAYS)).add(ip);
+            }
+        }
+
+        // Sketches go through the stored form before they are merged, as they do when read from endpoint_hit_hll
+        HyperLogLog merged = new HyperLogLog(PRECISION);
+        for (HyperLogLog sketch : daily) {
+            merged.merge(HyperLogLog.fromBytes(sketch.toBytes()));
+        }
+
+        double relativeError = Math.abs(merged.estimate() - ips.size()) / (double) ips.size();
+        assertThat(relativeError).isLessThanOrEqualTo(MAX_RELATIVE_ERROR);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100})
+    void smallSetsAreCountedAlmostExactly(int distinctIps) {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        for (int i = 0; i < distinctIps; i++) {
+            sketch.add(IpAddressCodec.encode(ip(i)));
+            sketch.add(IpAddressCodec.encode(ip(i)));
+        }
+
+        assertThat(sketch.estimate()).isBetween(Math.round(distinctIps * 0.98), Math.round(distinctIps * 1.02));
+    }
+
+    private static String ip(int i) {
+        // A tenth of the visitors come over IPv6
+        if (i % 10 == 9) {
+            return String.format("2001:db8::%x:%x", i >>> 16, i & 0xffff);
+        }
+        return "10." + (i >>> 16 & 0xff) + "." + (i >>> 8 & 0xff) + "." + (i & 0xff);
+    }
+}